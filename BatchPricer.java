@@ -0,0 +1,638 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  The BatchPricer class prices a file of orders without the GUI, using the
+ *  same catalog, engine and tax rules as the Purchase button.
+ *
+ *  Orders are read as CSV, one order per line:
+ *
+ *      order id,deck,trucks,wheels,accessory;accessory;...,jurisdiction
+ *
+ *  A field holding a comma or a quote is put in double quotes, with each
+ *  quote inside it doubled ("Street, Pro" or "The ""Big"" One"); a quoted
+ *  field can not run over more than one line.
+ *
+ *  Or, for files ending in .jsonl, as one JSON object per line:
+ *
+ *      {"id":"W-1","deck":"DECK-MT","trucks":"TRK-800","wheels":"WHL-55",
+ *       "accessories":["ACC-GRIP","ACC-NUTS"],"jurisdiction":"NJ"}
+ *
+ *  Parts may be given by SKU or by name; a missing deck, trucks or wheels
+ *  means None.  An order without a jurisdiction is taxed as a sale at the
+ *  shop.  There is one engine per jurisdiction, so the tax of each order
+ *  costs no more than at the register.  Each result line is
+ *
+ *      order id,subtotal,sales tax,total
+ *
+ *  or "order id,ERROR,reason" for an order that could not be priced, with
+ *  the id and reason quoted the same way where needed.  A line that can not
+ *  be read gets an ERROR line of its own; it never stops the run.
+ *
+ *  The file is streamed in chunks that are priced in parallel, formatted
+ *  straight into byte buffers, and written back in input order.  Only a few
+ *  chunks per thread are in memory at once, so the size of the file does
+ *  not matter.
+ *
+ *  Usage:  java BatchPricer <orders> <results> [catalog] [threads] [tax]
+ */
+
+public class BatchPricer {
+    private static final int    CHUNK_LINES     = 8192;
+    private static final int    CHUNKS_PER_THREAD = 2;
+
+    private final TaxEngine.Table   taxes;
+    private final PricingEngine[]   engines;    // By jurisdiction
+    private final Catalog.Category  decks;
+    private final Catalog.Category  trucks;
+    private final Catalog.Category  wheels;
+    private final Catalog.Category  accessories;
+
+    // Counts for the summary, updated by the reading thread only.
+    private long                    orderCount;
+    private long                    errorCount;
+
+    public BatchPricer(Catalog catalog, TaxEngine taxEngine)
+            throws IOException {
+        taxes           = taxEngine.compile(catalog);
+        engines         = new PricingEngine[taxes.getJurisdictionCount()];
+        for (int index = 0; index < engines.length; index++)
+            engines[index] = new PricingEngine(catalog, taxes, index);
+        decks           = catalog.getCategory("Deck");
+        trucks          = catalog.getCategory("Trucks");
+        wheels          = catalog.getCategory("Wheels");
+        accessories     = catalog.getCategory("Accessory");
+    }
+
+    /**
+     *  run method:
+     *  This method prices every order in the input file and writes the
+     *  results to the output file, using the given number of threads.
+     */
+
+    public void run(String inputFile, String outputFile, int threads)
+            throws IOException, InterruptedException {
+        boolean                 json        = inputFile.endsWith(".jsonl");
+        ExecutorService         pool        =
+            Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> pending   = new ArrayDeque<Future<Chunk>>();
+        int                     maxPending  = threads * CHUNKS_PER_THREAD;
+
+        try (BufferedReader in = Files.newBufferedReader(
+                    Paths.get(inputFile), StandardCharsets.UTF_8);
+             OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(Paths.get(outputFile)))) {
+            ArrayList<String>   lines       = new ArrayList<String>();
+            String              line;
+
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank())
+                    lines.add(line);
+
+                if (lines.size() == CHUNK_LINES) {
+                    submit(pool, pending, lines, json);
+                    lines = new ArrayList<String>();
+
+                    // Write finished chunks in order, waiting for the
+                    // oldest one when too many are in flight.
+                    while (pending.size() >= maxPending ||
+                           (!pending.isEmpty() && pending.peek().isDone()))
+                        write(pending.poll(), out);
+                }
+            }
+
+            if (!lines.isEmpty())
+                submit(pool, pending, lines, json);
+            while (!pending.isEmpty())
+                write(pending.poll(), out);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void submit(ExecutorService pool,
+                        ArrayDeque<Future<Chunk>> pending,
+                        ArrayList<String> lines, boolean json) {
+        pending.add(pool.submit(() -> priceChunk(lines, json)));
+    }
+
+    private void write(Future<Chunk> future, OutputStream out)
+            throws IOException, InterruptedException {
+        Chunk   chunk;
+
+        try {
+            chunk = future.get();
+        }
+        catch (ExecutionException ex) {
+            throw new IOException("Pricing failed", ex.getCause());
+        }
+
+        out.write(chunk.bytes, 0, chunk.length);
+        orderCount += chunk.orders;
+        errorCount += chunk.errors;
+    }
+
+    /**
+     *  Chunk class:
+     *  The priced results of one chunk of input lines, as UTF-8 bytes ready
+     *  to be written.
+     */
+
+    private static class Chunk {
+        byte[]  bytes;
+        int     length;
+        int     orders;
+        int     errors;
+
+        Chunk(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length)
+                bytes = Arrays.copyOf(bytes,
+                                      Math.max(bytes.length * 2,
+                                               length + extra));
+        }
+
+        void append(char ch) {
+            ensure(1);
+            bytes[length++] = (byte) ch;
+        }
+
+        void append(String text) {
+            int     count   = text.length();
+
+            ensure(count);
+            for (int index = 0; index < count; index++) {
+                char    ch  = text.charAt(index);
+
+                if (ch > 0x7F) {
+                    // Encode anything that is not plain ASCII properly.
+                    byte[]  encoded =
+                        text.substring(index).getBytes(StandardCharsets.UTF_8);
+
+                    ensure(encoded.length);
+                    System.arraycopy(encoded, 0, bytes, length,
+                                     encoded.length);
+                    length += encoded.length;
+                    return;
+                }
+                bytes[length++] = (byte) ch;
+            }
+        }
+
+        /**
+         *  appendField method:
+         *  This method appends a CSV field, in double quotes if it holds a
+         *  comma, a quote or a line break.
+         */
+
+        void appendField(String text) {
+            if (!needsQuotes(text)) {
+                append(text);
+                return;
+            }
+
+            append('"');
+            append(text.replace("\"", "\"\""));
+            append('"');
+        }
+
+        private static boolean needsQuotes(String text) {
+            for (int index = 0; index < text.length(); index++) {
+                char    ch  = text.charAt(index);
+
+                if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r')
+                    return true;
+            }
+
+            return false;
+        }
+
+        void appendAmount(long cents) {
+            ensure(CurrencyFormatter.PLAIN.getMaxLength());
+            length = CurrencyFormatter.PLAIN.format(cents, bytes, length);
+        }
+    }
+
+    /**
+     *  OrderLine class:
+     *  One order read from the input.  A pricing thread reuses one instance
+     *  for every line in its chunk.
+     */
+
+    private static class OrderLine {
+        String              id;
+        String              deck;
+        String              trucks;
+        String              wheels;
+        ArrayList<String>   accessories = new ArrayList<String>();
+        String              jurisdiction;
+
+        void clear() {
+            id = "";
+            deck = trucks = wheels = jurisdiction = null;
+            accessories.clear();
+        }
+    }
+
+    /**
+     *  priceChunk method:
+     *  This method parses and prices one chunk of lines.  It runs on a pool
+     *  thread.
+     */
+
+    private Chunk priceChunk(ArrayList<String> lines, boolean json) {
+        Chunk       chunk   = new Chunk(lines.size() * 32);
+        OrderLine   order   = new OrderLine();
+        Quote       quote   = new Quote();
+
+        for (String line : lines) {
+            String  error;
+
+            order.clear();
+            try {
+                error = json ? parseJson(line, order)
+                             : parseCsv(line, order);
+            }
+            catch (RuntimeException ex) {
+                // Report a line the parser trips over; keep going.
+                error = "unreadable line: " + ex;
+            }
+
+            // Skip a CSV header line.
+            if (error == null && !json && order.id.equals("order id"))
+                continue;
+
+            if (error == null)
+                error = price(order, quote);
+
+            chunk.appendField(order.id);
+            chunk.append(',');
+            if (error == null) {
+                chunk.appendAmount(quote.getSubtotalCents());
+                chunk.append(',');
+                chunk.appendAmount(quote.getSalesTaxCents());
+                chunk.append(',');
+                chunk.appendAmount(quote.getTotalCents());
+            }
+            else {
+                chunk.append("ERROR,");
+                chunk.appendField(error);
+                chunk.errors++;
+            }
+            chunk.append('\n');
+            chunk.orders++;
+        }
+
+        return chunk;
+    }
+
+    /**
+     *  price method:
+     *  This method prices one order the way the Purchase button does.  It
+     *  returns null on success or the reason the order was rejected.
+     */
+
+    private String price(OrderLine order, Quote quote) {
+        int     deck        = lookup(decks, order.deck);
+        int     truck       = lookup(trucks, order.trucks);
+        int     wheel       = lookup(wheels, order.wheels);
+        int     mask        = 0;
+        int     jurisdiction;
+
+        if (deck < 0)
+            return "unknown deck " + order.deck;
+        if (truck < 0)
+            return "unknown trucks " + order.trucks;
+        if (wheel < 0)
+            return "unknown wheels " + order.wheels;
+
+        for (String accessory : order.accessories) {
+            int     index   = lookup(accessories, accessory);
+
+            if (index < 0)
+                return "unknown accessory " + accessory;
+            mask |= 1 << index;
+        }
+
+        if (order.jurisdiction == null || order.jurisdiction.isEmpty()) {
+            jurisdiction = 0;
+        }
+        else {
+            jurisdiction = taxes.indexOf(order.jurisdiction);
+            if (jurisdiction < 0)
+                return "unknown jurisdiction " + order.jurisdiction;
+        }
+
+        engines[jurisdiction].price(deck, truck, wheel, mask, quote);
+        if (quote.getSubtotalCents() == 0)
+            return "No items have been selected.";
+
+        return null;
+    }
+
+    /**
+     *  lookup method:
+     *  This method finds a part by SKU or by name.  A missing part is the
+     *  category's first part (None); an unknown one is -1.
+     */
+
+    private static int lookup(Catalog.Category category, String part) {
+        int     index;
+
+        if (part == null || part.isEmpty())
+            return 0;
+
+        index = category.indexOfSku(part);
+        return index >= 0 ? index : category.indexOfName(part);
+    }
+
+    /**
+     *  parseCsv method:
+     *  This method splits a CSV order line into the order.  It returns null
+     *  on success or the reason the line could not be read.
+     */
+
+    private static String parseCsv(String line, OrderLine order) {
+        ArrayList<String>   list    = new ArrayList<String>(6);
+        String[]            fields;
+
+        if (!splitCsv(line, list)) {
+            // Keep the id if it was read before the bad field.
+            if (!list.isEmpty())
+                order.id = list.get(0);
+            return "unterminated quoted field";
+        }
+
+        fields = list.toArray(new String[0]);
+        if (fields.length < 4 || fields.length > 6)
+            return "expected 4 to 6 fields";
+
+        order.id = fields[0].trim();
+        order.deck = fields[1].trim();
+        order.trucks = fields[2].trim();
+        order.wheels = fields[3].trim();
+
+        if (fields.length >= 5) {
+            for (String accessory : fields[4].split(";")) {
+                if (!accessory.isBlank())
+                    order.accessories.add(accessory.trim());
+            }
+        }
+        if (fields.length == 6)
+            order.jurisdiction = fields[5].trim();
+
+        return null;
+    }
+
+    /**
+     *  splitCsv method:
+     *  This method splits a CSV line into fields, taking a comma inside
+     *  double quotes as part of the field and "" as one quote.  It returns
+     *  false if a quoted field is not closed.
+     */
+
+    private static boolean splitCsv(String line, ArrayList<String> fields) {
+        StringBuilder   field   = new StringBuilder();
+        int             index   = 0;
+        int             end;
+
+        while (true) {
+            int     start   = index;
+
+            field.setLength(0);
+
+            // Spaces before an opening quote do not count.
+            while (start < line.length() && line.charAt(start) == ' ')
+                start++;
+
+            if (start < line.length() && line.charAt(start) == '"') {
+                index = start + 1;
+                while (true) {
+                    if (index >= line.length())
+                        return false;
+
+                    char    ch  = line.charAt(index++);
+
+                    if (ch != '"')
+                        field.append(ch);
+                    else if (index < line.length() &&
+                             line.charAt(index) == '"')
+                        field.append(line.charAt(index++));
+                    else
+                        break;
+                }
+            }
+
+            // The rest of the field, up to the next comma.
+            end = line.indexOf(',', index);
+            if (end < 0)
+                end = line.length();
+            field.append(line, index, end);
+            fields.add(field.toString().trim());
+
+            if (end == line.length())
+                return true;
+            index = end + 1;
+        }
+    }
+
+    /**
+     *  parseJson method:
+     *  This method reads a flat JSON order object whose values are strings
+     *  or arrays of strings.  It returns null on success or the reason the
+     *  line could not be read.
+     */
+
+    private static String parseJson(String line, OrderLine order) {
+        JsonCursor  cursor  = new JsonCursor(line);
+
+        if (!cursor.expect('{'))
+            return "expected a JSON object";
+
+        if (cursor.expect('}'))
+            return null;
+
+        do {
+            String  key     = cursor.readString();
+
+            if (key == null || !cursor.expect(':'))
+                return "bad JSON at column " + (cursor.position + 1);
+
+            if (key.equals("accessories")) {
+                if (!cursor.expect('['))
+                    return "accessories must be an array";
+                if (!cursor.expect(']')) {
+                    do {
+                        String  accessory   = cursor.readString();
+
+                        if (accessory == null)
+                            return "bad JSON at column " +
+                                   (cursor.position + 1);
+                        order.accessories.add(accessory);
+                    } while (cursor.expect(','));
+
+                    if (!cursor.expect(']'))
+                        return "bad JSON at column " + (cursor.position + 1);
+                }
+                continue;
+            }
+
+            String  value   = cursor.readString();
+
+            if (value == null)
+                return "bad JSON at column " + (cursor.position + 1);
+
+            switch (key) {
+                case "id":      order.id = value;       break;
+                case "deck":    order.deck = value;     break;
+                case "trucks":  order.trucks = value;   break;
+                case "wheels":  order.wheels = value;   break;
+                case "jurisdiction":
+                    order.jurisdiction = value;
+                    break;
+                default:                                break;
+            }
+        } while (cursor.expect(','));
+
+        return cursor.expect('}') ? null : "expected '}'";
+    }
+
+    /**
+     *  JsonCursor class:
+     *  Just enough of a JSON reader for the order objects.
+     */
+
+    private static class JsonCursor {
+        final String    text;
+        int             position;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        private void skipSpace() {
+            while (position < text.length() &&
+                   Character.isWhitespace(text.charAt(position)))
+                position++;
+        }
+
+        // Consume the character if it is next.
+        boolean expect(char ch) {
+            skipSpace();
+            if (position < text.length() && text.charAt(position) == ch) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        // Read the four hex digits of a unicode escape, or return -1.
+        private int readHex() {
+            int     value   = 0;
+
+            if (position + 4 > text.length())
+                return -1;
+
+            for (int count = 0; count < 4; count++) {
+                int     digit   = Character.digit(text.charAt(position++), 16);
+
+                if (digit < 0)
+                    return -1;
+                value = value * 16 + digit;
+            }
+
+            return value;
+        }
+
+        // Read a string, or return null if there is none here.
+        String readString() {
+            StringBuilder   value;
+
+            if (!expect('"'))
+                return null;
+
+            value = new StringBuilder();
+            while (position < text.length()) {
+                char    ch  = text.charAt(position++);
+
+                if (ch == '"')
+                    return value.toString();
+                if (ch == '\\' && position < text.length()) {
+                    ch = text.charAt(position++);
+                    switch (ch) {
+                        case 'n':   ch = '\n';  break;
+                        case 't':   ch = '\t';  break;
+                        case 'r':   ch = '\r';  break;
+                        case 'b':   ch = '\b';  break;
+                        case 'f':   ch = '\f';  break;
+                        case 'u':
+                            int     code    = readHex();
+
+                            if (code < 0)
+                                return null;
+                            ch = (char) code;
+                            break;
+                        default:                break;
+                    }
+                }
+                value.append(ch);
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     *  main method:
+     *  This prices an order file from the command line.
+     */
+
+    public static void main(String[] args) {
+        String  catalogFile;
+        String  taxFile;
+        int     threads;
+        long    start       = System.nanoTime();
+
+        if (args.length < 2 || args.length > 5) {
+            System.err.println("Usage: java BatchPricer <orders> <results> " +
+                               "[catalog] [threads] [tax]");
+            System.exit(2);
+        }
+
+        catalogFile = args.length > 2 ? args[2] : "catalog.txt";
+        threads = args.length > 3 ? Integer.parseInt(args[3])
+                                  : Runtime.getRuntime().availableProcessors();
+        taxFile = args.length > 4 ? args[4] : "tax.txt";
+
+        try {
+            BatchPricer pricer  = new BatchPricer(Catalog.load(catalogFile),
+                                                  TaxEngine.load(taxFile));
+
+            pricer.run(args[0], args[1], threads);
+            Log.info("Priced {} orders ({} rejected) in {} ms",
+                     pricer.orderCount, pricer.errorCount,
+                     (System.nanoTime() - start) / 1_000_000);
+        }
+        catch (IOException | InterruptedException ex) {
+            Log.error("Batch pricing failed", ex);
+            Log.flush();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,535 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ *  The Catalog class holds the parts sold by The Skate Shop, grouped by
+ *  category.  It is loaded from a text file with one entry per line:
+ *
+ *      # A comment
+ *      category|Deck|Decks
+ *      part|DECK-MT|Master Thrasher|60.00
+ *      category|Accessory|Accessories|multiple
+ *
+ *  A category line starts a new category with a key and a title, and
+ *  optionally "single" or "multiple" for whether the customer chooses one
+ *  of its parts (the default) or any number of them; the part lines that
+ *  follow it give the SKU, name and price of each part.  Parts are listed
+ *  in selection order and prices are stored as whole cents.  A
+ *  single-choice category needs at least one part, and a multiple-choice
+ *  one may have at most MAX_MULTIPLE_PARTS.  A SKU may appear only once in
+ *  the whole catalog, since stock and sales are counted by SKU.
+ *
+ *  Each catalog has a fingerprint, a hash of everything in it, which
+ *  identifies the version of the catalog an order was priced from.
+ */
+
+public class Catalog {
+    // A multiple-choice selection is an int bit mask, one bit per part.
+    public static final int     MAX_MULTIPLE_PARTS  = 31;
+
+    private static final char   SEPARATOR   = '|';
+    private static final String SINGLE      = "single";
+    private static final String MULTIPLE    = "multiple";
+
+    private final Category[]                categories;
+    private final HashMap<String, Integer>  categoryIndex;
+    private final long                      fingerprint;
+
+    Catalog(Category[] categories, long fingerprint) {
+        this.categories     = categories;
+        this.fingerprint    = fingerprint;
+
+        categoryIndex = new HashMap<String, Integer>();
+        for (int index = 0; index < categories.length; index++)
+            categoryIndex.put(categories[index].getKey(), index);
+    }
+
+    /**
+     *  load method:
+     *  This method reads a catalog from the named file.  A file ending in
+     *  .bin is a binary catalog, which is mapped rather than read.
+     */
+
+    public static Catalog load(String fileName) throws IOException {
+        if (fileName.endsWith(BinaryCatalog.EXTENSION))
+            return BinaryCatalog.open(fileName);
+
+        try (BufferedReader reader = Files.newBufferedReader(
+                Paths.get(fileName), StandardCharsets.UTF_8)) {
+            return parse(reader, fileName);
+        }
+    }
+
+    /**
+     *  parse method:
+     *  This method reads a catalog from a reader.  The source name is only
+     *  used in error messages.
+     */
+
+    public static Catalog parse(BufferedReader reader, String source)
+            throws IOException {
+        ArrayList<Category>     categories      = new ArrayList<Category>();
+        HashMap<String, String> skuCategories   =
+            new HashMap<String, String>();
+        TextCategory            category        = null;
+        int                     categoryLine    = 0;
+        String                  line;
+        int                     lineNumber      = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+
+            // Skip blank lines and comments.
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+
+            String[]    fields  = split(line);
+
+            if (fields[0].equals("category") &&
+                (fields.length == 3 || fields.length == 4)) {
+                boolean multiple    = fields.length == 4 &&
+                                      fields[3].equals(MULTIPLE);
+
+                if (fields.length == 4 && !multiple &&
+                    !fields[3].equals(SINGLE))
+                    throw new IOException(source + ":" + lineNumber +
+                                          ": bad choice '" + fields[3] +
+                                          "', expected " + SINGLE + " or " +
+                                          MULTIPLE);
+                if (category != null)
+                    categories.add(finish(category, source, categoryLine));
+                for (Category other : categories) {
+                    if (other.getKey().equals(fields[1]))
+                        throw new IOException(source + ":" + lineNumber +
+                                              ": duplicate category '" +
+                                              fields[1] + "'");
+                }
+                category = new TextCategory(fields[1], fields[2], multiple);
+                categoryLine = lineNumber;
+            }
+            else if (fields[0].equals("part") && fields.length == 4) {
+                if (category == null)
+                    throw new IOException(source + ":" + lineNumber +
+                                          ": part before any category");
+
+                long    cents   = Money.parse(fields[3]);
+                String  owner;
+
+                if (cents < 0)
+                    throw new IOException(source + ":" + lineNumber +
+                                          ": bad price '" + fields[3] + "'");
+                if (category.isMultipleChoice() &&
+                    category.size() == MAX_MULTIPLE_PARTS)
+                    throw new IOException(source + ":" + lineNumber +
+                                          ": more than " +
+                                          MAX_MULTIPLE_PARTS + " parts in " +
+                                          "multiple category '" +
+                                          category.getKey() + "'");
+
+                owner = skuCategories.putIfAbsent(fields[1],
+                                                  category.getKey());
+                if (owner != null)
+                    throw new IOException(source + ":" + lineNumber +
+                                          ": duplicate SKU '" + fields[1] +
+                                          "', already in category '" +
+                                          owner + "'");
+                category.add(fields[1], fields[2], cents);
+            }
+            else {
+                throw new IOException(source + ":" + lineNumber +
+                                      ": unrecognized line '" + line + "'");
+            }
+        }
+
+        if (category != null)
+            categories.add(finish(category, source, categoryLine));
+
+        Category[]  array   = categories.toArray(new Category[0]);
+
+        return new Catalog(array, fingerprint(array));
+    }
+
+    /**
+     *  finish method:
+     *  This method checks a category once all of its parts are read and
+     *  trims it.  A single-choice category must have a part to choose.
+     */
+
+    private static Category finish(TextCategory category, String source,
+                                   int categoryLine) throws IOException {
+        if (!category.isMultipleChoice() && category.size() == 0)
+            throw new IOException(source + ":" + categoryLine +
+                                  ": no parts in single category '" +
+                                  category.getKey() + "'");
+
+        return category.trim();
+    }
+
+    /**
+     *  fingerprint method:
+     *  This method hashes every key, title, choice mode, SKU, name and
+     *  price with 64-bit FNV-1a, so two catalogs with the same fingerprint
+     *  price and name every part the same way.
+     */
+
+    static long fingerprint(Category[] categories) {
+        long    hash    = 0xCBF29CE484222325L;
+
+        for (Category category : categories) {
+            hash = hash(hash, category.getKey());
+            hash = hash(hash, category.getTitle());
+            hash = hash(hash, category.isMultipleChoice() ? 1 : 0);
+            for (int index = 0; index < category.size(); index++) {
+                hash = hash(hash, category.getSku(index));
+                hash = hash(hash, category.getName(index));
+                hash = hash(hash, category.getPriceCents(index));
+            }
+        }
+
+        return hash;
+    }
+
+    // Each field ends with a char no text has, so fields can not run on.
+    private static long hash(long hash, String text) {
+        for (int index = 0; index < text.length(); index++)
+            hash = (hash ^ text.charAt(index)) * 0x100000001B3L;
+
+        return (hash ^ 0xFFFF) * 0x100000001B3L;
+    }
+
+    private static long hash(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 16)
+            hash = (hash ^ ((value >>> shift) & 0xFFFF)) * 0x100000001B3L;
+
+        return (hash ^ 0xFFFF) * 0x100000001B3L;
+    }
+
+    /**
+     *  getFingerprint method:
+     *  This method returns the hash that identifies this version of the
+     *  catalog.
+     */
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     *  writeTo method:
+     *  This method writes the catalog in the format parse reads.
+     */
+
+    public void writeTo(Appendable out) throws IOException {
+        StringBuilder   price   = new StringBuilder();
+
+        for (Category category : categories) {
+            out.append("category").append(SEPARATOR).append(category.getKey())
+               .append(SEPARATOR).append(category.getTitle());
+            if (category.isMultipleChoice())
+                out.append(SEPARATOR).append(MULTIPLE);
+            out.append('\n');
+
+            for (int index = 0; index < category.size(); index++) {
+                price.setLength(0);
+                Money.appendTo(price, category.getPriceCents(index));
+                out.append("part").append(SEPARATOR)
+                   .append(category.getSku(index)).append(SEPARATOR)
+                   .append(category.getName(index)).append(SEPARATOR)
+                   .append(price).append('\n');
+            }
+        }
+    }
+
+    /**
+     *  split method:
+     *  This method splits a line at each separator.
+     */
+
+    private static String[] split(String line) {
+        ArrayList<String>   fields  = new ArrayList<String>(4);
+        int                 start   = 0;
+        int                 end;
+
+        while ((end = line.indexOf(SEPARATOR, start)) >= 0) {
+            fields.add(line.substring(start, end).trim());
+            start = end + 1;
+        }
+        fields.add(line.substring(start).trim());
+
+        return fields.toArray(new String[0]);
+    }
+
+    public int getCategoryCount() {
+        return categories.length;
+    }
+
+    public Category getCategory(int index) {
+        return categories[index];
+    }
+
+    /**
+     *  indexOfCategory method:
+     *  This method returns the index of the category with the given key.  It
+     *  throws an IllegalArgumentException if the catalog does not have one.
+     */
+
+    public int indexOfCategory(String key) {
+        Integer index   = categoryIndex.get(key);
+
+        if (index == null)
+            throw new IllegalArgumentException("No category '" + key +
+                                               "' in the catalog");
+
+        return index;
+    }
+
+    public boolean hasCategory(String key) {
+        return categoryIndex.containsKey(key);
+    }
+
+    /**
+     *  getCategory method:
+     *  This method returns the category with the given key.  It throws an
+     *  IllegalArgumentException if the catalog does not have one.
+     */
+
+    public Category getCategory(String key) {
+        return categories[indexOfCategory(key)];
+    }
+
+    /**
+     *  Category class:
+     *  The parts of one category, indexed by the part's position in the
+     *  selection list.  Parts can also be looked up by SKU or by name.  A
+     *  category read from a text catalog holds its parts in arrays; one in
+     *  a binary catalog reads them from the mapped file (see
+     *  BinaryCatalog).
+     */
+
+    public abstract static class Category {
+        private final String    key;
+        private final String    title;
+        private final boolean   multipleChoice;
+
+        // Built the first time it is asked for.
+        private volatile PartSearchIndex    searchIndex;
+
+        protected Category(String key, String title, boolean multipleChoice) {
+            this.key            = key;
+            this.title          = title;
+            this.multipleChoice = multipleChoice;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         *  isMultipleChoice method:
+         *  This method returns true if any number of the parts can be
+         *  chosen, or false if exactly one is, the first being None.
+         */
+
+        public boolean isMultipleChoice() {
+            return multipleChoice;
+        }
+
+        public abstract int size();
+
+        public abstract String getSku(int index);
+
+        public abstract String getName(int index);
+
+        public abstract long getPriceCents(int index);
+
+        /**
+         *  getNames method:
+         *  This method returns a copy of the part names in list order.
+         */
+
+        public String[] getNames() {
+            String[]    names   = new String[size()];
+
+            for (int index = 0; index < names.length; index++)
+                names[index] = getName(index);
+
+            return names;
+        }
+
+        /**
+         *  getPriceCents method:
+         *  This method returns a copy of the part prices in cents, in list
+         *  order.
+         */
+
+        public long[] getPriceCents() {
+            long[]  prices  = new long[size()];
+
+            for (int index = 0; index < prices.length; index++)
+                prices[index] = getPriceCents(index);
+
+            return prices;
+        }
+
+        /**
+         *  getLongestName method:
+         *  This method returns the part name with the most characters, or
+         *  "" if there are no parts.  A binary catalog stores it, so that
+         *  it is not found by reading every name.
+         */
+
+        public String getLongestName() {
+            String  longest = "";
+
+            for (int index = 0; index < size(); index++) {
+                String  name    = getName(index);
+
+                if (name.length() > longest.length())
+                    longest = name;
+            }
+
+            return longest;
+        }
+
+        /**
+         *  indexOfSku method:
+         *  This method returns the index of the part with the given SKU, or
+         *  -1 if there is none.
+         */
+
+        public abstract int indexOfSku(String sku);
+
+        /**
+         *  indexOfName method:
+         *  This method returns the index of the first part with the given
+         *  name, or -1 if there is none.
+         */
+
+        public abstract int indexOfName(String name);
+
+        /**
+         *  getSearchIndex method:
+         *  This method returns the index for searching the parts by word,
+         *  building it the first time.  Two threads may both build it, with
+         *  the same result.
+         */
+
+        public PartSearchIndex getSearchIndex() {
+            PartSearchIndex index   = searchIndex;
+
+            if (index == null) {
+                index = new PartSearchIndex(this);
+                searchIndex = index;
+            }
+
+            return index;
+        }
+
+        /**
+         *  isSearchIndexBuilt method:
+         *  This method returns true if getSearchIndex will return at once.
+         */
+
+        public boolean isSearchIndexBuilt() {
+            return searchIndex != null;
+        }
+    }
+
+    /**
+     *  TextCategory class:
+     *  A category read from a text catalog, stored as parallel arrays.
+     */
+
+    private static final class TextCategory extends Category {
+        private String[]        skus        = new String[8];
+        private String[]        names       = new String[8];
+        private long[]          priceCents  = new long[8];
+        private int             size;
+
+        private final HashMap<String, Integer>  skuIndex    =
+            new HashMap<String, Integer>();
+        private final HashMap<String, Integer>  nameIndex   =
+            new HashMap<String, Integer>();
+
+        private TextCategory(String key, String title,
+                             boolean multipleChoice) {
+            super(key, title, multipleChoice);
+        }
+
+        /**
+         *  add method:
+         *  This method appends a part while the catalog is being loaded.
+         *  The parse has already checked that the SKU is new.
+         */
+
+        private void add(String sku, String name, long cents) {
+            if (size == skus.length) {
+                skus = Arrays.copyOf(skus, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+                priceCents = Arrays.copyOf(priceCents, size * 2);
+            }
+
+            skus[size] = sku;
+            names[size] = name;
+            priceCents[size] = cents;
+            skuIndex.put(sku, size);
+            nameIndex.putIfAbsent(name, size);
+            size++;
+        }
+
+        // Drop the spare room left over from loading.
+        private TextCategory trim() {
+            skus = Arrays.copyOf(skus, size);
+            names = Arrays.copyOf(names, size);
+            priceCents = Arrays.copyOf(priceCents, size);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String getSku(int index) {
+            return skus[index];
+        }
+
+        public String getName(int index) {
+            return names[index];
+        }
+
+        public long getPriceCents(int index) {
+            return priceCents[index];
+        }
+
+        public String[] getNames() {
+            return names.clone();
+        }
+
+        public long[] getPriceCents() {
+            return priceCents.clone();
+        }
+
+        public int indexOfSku(String sku) {
+            Integer index   = skuIndex.get(sku);
+
+            return index == null ? -1 : index;
+        }
+
+        public int indexOfName(String name) {
+            Integer index   = nameIndex.get(name);
+
+            return index == null ? -1 : index;
+        }
+    }
+}
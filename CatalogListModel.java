@@ -0,0 +1,117 @@
+import java.util.Arrays;
+import javax.swing.AbstractListModel;
+
+/**
+ *  The CatalogListModel class shows the part names of one catalog category
+ *  in a JList.  It reads the names from the category as the list asks for
+ *  them rather than copying them into the list, so a category of any size
+ *  costs nothing to show, and a new version of the catalog is swapped in
+ *  without rebuilding the list.
+ *
+ *  A list with tens of thousands of rows must not measure each one.  The
+ *  model takes the category's longest name, for the list to use as its
+ *  prototype cell value, which gives every row the same size; the list
+ *  then only renders the rows that are visible.
+ *
+ *  The list can be narrowed to the parts matching a search.  Rows are then
+ *  no longer part indices; getPartIndex and getRow convert between them.
+ */
+
+public class CatalogListModel extends AbstractListModel<String> {
+    private Catalog.Category    category;
+    private String              prototype;
+    private int[]               rows;       // Parts shown, or null for all
+
+    public CatalogListModel(Catalog.Category category) {
+        this.category   = category;
+        this.prototype  = category.getLongestName();
+    }
+
+    public int getSize() {
+        return rows == null ? category.size() : rows.length;
+    }
+
+    public String getElementAt(int index) {
+        return category.getName(getPartIndex(index));
+    }
+
+    public Catalog.Category getCategory() {
+        return category;
+    }
+
+    /**
+     *  getPrototype method:
+     *  This method returns the longest part name, to size the list's cells.
+     */
+
+    public String getPrototype() {
+        return prototype;
+    }
+
+    /**
+     *  getPartIndex method:
+     *  This method returns the index in the category of the part shown in a
+     *  row.
+     */
+
+    public int getPartIndex(int row) {
+        return rows == null ? row : rows[row];
+    }
+
+    /**
+     *  getRow method:
+     *  This method returns the row showing a part, or -1 if the search
+     *  hides it.
+     */
+
+    public int getRow(int part) {
+        if (rows == null)
+            return part < category.size() ? part : -1;
+
+        int     row     = Arrays.binarySearch(rows, part);
+
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     *  setCategory method:
+     *  This method shows every part of another category, or of a new
+     *  version of this one, telling the list which rows changed.
+     */
+
+    public void setCategory(Catalog.Category category) {
+        int     oldSize = getSize();
+
+        this.category   = category;
+        this.prototype  = category.getLongestName();
+        this.rows       = null;
+
+        fireResized(oldSize);
+    }
+
+    /**
+     *  setQuery method:
+     *  This method shows only the parts with a word starting with each word
+     *  of the query, or every part if the query is blank.  A blank query
+     *  does not need the category's search index.
+     */
+
+    public void setQuery(String query) {
+        int     oldSize = getSize();
+
+        rows = query.isBlank() ? null
+                               : category.getSearchIndex().search(query);
+        fireResized(oldSize);
+    }
+
+    private void fireResized(int oldSize) {
+        int     newSize = getSize();
+
+        if (newSize < oldSize)
+            fireIntervalRemoved(this, newSize, oldSize - 1);
+        else if (newSize > oldSize)
+            fireIntervalAdded(this, oldSize, newSize - 1);
+        if (Math.min(oldSize, newSize) > 0)
+            fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+    }
+}
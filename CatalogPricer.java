@@ -0,0 +1,96 @@
+/**
+ *  CatalogPricer class:
+ *  This class prices an order over whatever categories a catalog has, as
+ *  PricingEngine does for the shop's four fixed ones.  The order is one
+ *  choice per category, by category index: the index of the part for a
+ *  single-choice category, or a bit mask of the parts for a multiple-choice
+ *  one.  Each category has its own sales tax rate from a compiled tax
+ *  table, and the tax is rounded once for the whole order.  The catalog
+ *  keeps a multiple-choice category to Catalog.MAX_MULTIPLE_PARTS parts,
+ *  so that its mask fits in an int.
+ *
+ *  Prices and rates are copied into arrays indexed by category when the
+ *  pricer is built, and the parts of a multiple-choice category are priced
+ *  from tables of the subsets of each group of eight, built by QuoteTable,
+ *  so pricing an order is a few array reads per category and does not
+ *  allocate.
+ */
+
+public class CatalogPricer {
+    private final boolean[]     multiple;       // By category
+    private final long[][]      prices;         // Cents, by category and part
+    private final long[][][]    groupTables;    // Subset prices, if multiple
+    private final long[]        taxRates;       // Millionths, by category
+
+    /**
+     *  CatalogPricer constructor:
+     *  This takes the prices from a catalog and the sales tax rates from a
+     *  tax table compiled for it, in one jurisdiction.
+     */
+
+    public CatalogPricer(Catalog catalog, TaxEngine.Table taxes,
+                         int jurisdiction) {
+        int     count   = catalog.getCategoryCount();
+
+        multiple = new boolean[count];
+        prices = new long[count][];
+        groupTables = new long[count][][];
+        taxRates = new long[count];
+
+        for (int index = 0; index < count; index++) {
+            Catalog.Category    category    = catalog.getCategory(index);
+
+            multiple[index] = category.isMultipleChoice();
+            prices[index] = category.getPriceCents();
+            taxRates[index] = taxes.getRate(jurisdiction, index);
+            if (multiple[index])
+                groupTables[index] =
+                        QuoteTable.buildGroupTables(prices[index]);
+        }
+    }
+
+    public int getCategoryCount() {
+        return prices.length;
+    }
+
+    /**
+     *  price method:
+     *  This method prices one order, given one choice per category, and
+     *  stores the result in the quote that is passed in, which is also
+     *  returned.
+     */
+
+    public Quote price(int[] choices, Quote quote) {
+        long    subtotal        = 0;
+        long    taxMillionths   = 0;
+
+        if (choices.length != prices.length)
+            throw new IllegalArgumentException("Expected " + prices.length +
+                                               " choices, got " +
+                                               choices.length);
+
+        for (int index = 0; index < prices.length; index++) {
+            long    cents;
+
+            if (multiple[index]) {
+                int     mask    = choices[index];
+
+                if (mask >>> prices[index].length != 0)
+                    throw new IndexOutOfBoundsException("Mask " + mask +
+                                                        " is out of range");
+
+                cents = QuoteTable.sumGroups(groupTables[index], mask);
+            }
+            else {
+                cents = prices[index][choices[index]];
+            }
+
+            subtotal += cents;
+            taxMillionths += Math.multiplyExact(cents, taxRates[index]);
+        }
+
+        long    salesTax    = Money.roundMillionths(taxMillionths);
+        quote.set(subtotal, salesTax, subtotal + salesTax);
+        return quote;
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ *  The CatalogStore class holds the current parts catalog, the tax table
+ *  compiled for it and the pricing engine built from them, and reloads them
+ *  when the catalog or tax file changes.  The engine charges the tax of the
+ *  shop's own jurisdiction, the first one in the tax file.
+ *
+ *  The catalog and engine are published together as an immutable Snapshot.
+ *  A reload parses the files and builds the new engine on the watcher thread,
+ *  then swaps the snapshot in with a single volatile write.  Readers call
+ *  current() once and keep using that snapshot for the whole order, so they
+ *  never take a lock and never see a half-built catalog.  A file that fails
+ *  to load is logged and the current snapshot stays in place.
+ */
+
+public class CatalogStore implements AutoCloseable {
+    // Editors often write a file in several steps; wait for them to finish.
+    private static final long   SETTLE_MILLIS   = 200;
+
+    private final Path          file;
+    private final Path          taxFile;
+    private volatile Snapshot   current;
+
+    private final CopyOnWriteArrayList<Consumer<Snapshot>> listeners =
+        new CopyOnWriteArrayList<Consumer<Snapshot>>();
+    private WatchService        watchService;
+
+    /**
+     *  Snapshot class:
+     *  One version of the catalog, its tax table and the engine that prices
+     *  it.
+     */
+
+    public static final class Snapshot implements OrderService.CatalogView {
+        private final long              version;
+        private final Catalog           catalog;
+        private final TaxEngine.Table   taxes;
+        private final PricingEngine     engine;
+
+        Snapshot(long version, Catalog catalog, TaxEngine.Table taxes,
+                 PricingEngine engine) {
+            this.version    = version;
+            this.catalog    = catalog;
+            this.taxes      = taxes;
+            this.engine     = engine;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Catalog getCatalog() {
+            return catalog;
+        }
+
+        public TaxEngine.Table getTaxes() {
+            return taxes;
+        }
+
+        public PricingEngine getEngine() {
+            return engine;
+        }
+    }
+
+    /**
+     *  CatalogStore constructor:
+     *  This loads the first snapshot from the catalog and tax files.
+     */
+
+    public CatalogStore(String fileName, String taxFileName)
+            throws IOException {
+        this.file       = Paths.get(fileName).toAbsolutePath();
+        this.taxFile    = Paths.get(taxFileName).toAbsolutePath();
+
+        current = load(1);
+    }
+
+    /**
+     *  current method:
+     *  This method returns the snapshot to use for the next piece of work.
+     */
+
+    public Snapshot current() {
+        return current;
+    }
+
+    /**
+     *  addListener method:
+     *  This method registers a listener that is called, on the watcher
+     *  thread, with each new snapshot after it has been published.
+     */
+
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     *  reload method:
+     *  This method loads the catalog and tax files again and publishes them.
+     *  It returns false, leaving the current snapshot alone, if either file
+     *  can not be loaded.
+     */
+
+    public boolean reload() {
+        Snapshot    next;
+
+        try {
+            next = load(current.version + 1);
+        }
+        catch (IOException | IllegalArgumentException ex) {
+            Log.warn("Keeping the current catalog: {}", ex.getMessage());
+            return false;
+        }
+
+        current = next;
+        Log.info("Catalog version {} is live", next.version);
+
+        for (Consumer<Snapshot> listener : listeners)
+            listener.accept(next);
+
+        return true;
+    }
+
+    private Snapshot load(long version) throws IOException {
+        Catalog         catalog = Catalog.load(file.toString());
+        TaxEngine.Table taxes   =
+            TaxEngine.load(taxFile.toString()).compile(catalog);
+
+        return new Snapshot(version, catalog, taxes,
+                            new PricingEngine(catalog, taxes, 0));
+    }
+
+    /**
+     *  startWatching method:
+     *  This method starts a daemon thread that reloads the catalog whenever
+     *  the catalog or tax file is changed.
+     */
+
+    public synchronized void startWatching() throws IOException {
+        Thread  watcher;
+
+        if (watchService != null)
+            return;
+
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService,
+                                  StandardWatchEventKinds.ENTRY_CREATE,
+                                  StandardWatchEventKinds.ENTRY_MODIFY);
+        if (!taxFile.getParent().equals(file.getParent()))
+            taxFile.getParent().register(watchService,
+                                         StandardWatchEventKinds.ENTRY_CREATE,
+                                         StandardWatchEventKinds.ENTRY_MODIFY);
+
+        watcher = new Thread(this::watchLoop, "catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        WatchService    service = watchService;
+
+        try {
+            while (true) {
+                WatchKey    key     = service.take();
+                boolean     changed = false;
+
+                // Let the writer finish, then take every event since.
+                TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+                do {
+                    Path    directory   = (Path) key.watchable();
+
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object  context = event.context();
+
+                        if (context instanceof Path) {
+                            Path    changedFile =
+                                directory.resolve((Path) context);
+
+                            if (changedFile.equals(file) ||
+                                changedFile.equals(taxFile))
+                                changed = true;
+                        }
+                    }
+                    key.reset();
+                } while ((key = service.poll()) != null);
+
+                if (changed)
+                    reload();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Stopped by close().
+        }
+    }
+
+    /**
+     *  close method:
+     *  This method stops watching the catalog and tax files.
+     */
+
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *  The CurrencyFormatter class writes amounts in cents as text, such as
+ *  13600 as "$136.00", directly into a char or byte buffer.  It does the
+ *  digit conversion itself instead of going through DecimalFormat, so
+ *  formatting allocates nothing unless a String is asked for.
+ *
+ *  A formatter is immutable and can be shared by any number of threads.
+ */
+
+public final class CurrencyFormatter {
+    // Formats with a dollar sign, for the screen and receipts.
+    public static final CurrencyFormatter   DOLLARS =
+        new CurrencyFormatter("$");
+    // Formats the bare amount, for exported files.
+    public static final CurrencyFormatter   PLAIN   = new CurrencyFormatter("");
+
+    // Digits of Long.MIN_VALUE, a minus sign and a decimal point.
+    private static final int    MAX_NUMBER_LENGTH   = 19 + 2;
+
+    private final char[]    symbol;
+
+    /**
+     *  CurrencyFormatter constructor:
+     *  The symbol is written before the amount and must be ASCII.
+     */
+
+    public CurrencyFormatter(String symbol) {
+        for (int index = 0; index < symbol.length(); index++) {
+            if (symbol.charAt(index) > 0x7F)
+                throw new IllegalArgumentException(
+                        "Currency symbol must be ASCII: " + symbol);
+        }
+
+        this.symbol = symbol.toCharArray();
+    }
+
+    /**
+     *  getMaxLength method:
+     *  This method returns the most characters any amount can take, for
+     *  sizing buffers.
+     */
+
+    public int getMaxLength() {
+        return symbol.length + MAX_NUMBER_LENGTH;
+    }
+
+    /**
+     *  length method:
+     *  This method returns the number of characters the amount takes.
+     */
+
+    public int length(long cents) {
+        long    whole   = Math.abs(cents / 100);
+        int     digits  = 1;
+
+        while (whole >= 10) {
+            whole /= 10;
+            digits++;
+        }
+
+        // Sign, symbol, whole dollars, point and two cents digits.
+        return (cents < 0 ? 1 : 0) + symbol.length + digits + 3;
+    }
+
+    /**
+     *  format method:
+     *  This method writes the amount into the buffer at the offset and
+     *  returns the offset just past it.  The buffer must have room for
+     *  length(cents) characters.
+     */
+
+    public int format(long cents, char[] buffer, int offset) {
+        int     end     = offset + length(cents);
+        int     index   = end;
+        long    whole   = cents / 100;
+        int     part    = (int) Math.abs(cents % 100);
+
+        // Write the digits backwards from the end, working with negative
+        // numbers so that Long.MIN_VALUE needs no special case.
+        if (whole > 0)
+            whole = -whole;
+
+        buffer[--index] = (char) ('0' + part % 10);
+        buffer[--index] = (char) ('0' + part / 10);
+        buffer[--index] = '.';
+        do {
+            buffer[--index] = (char) ('0' - whole % 10);
+            whole /= 10;
+        } while (whole != 0);
+
+        index -= symbol.length;
+        System.arraycopy(symbol, 0, buffer, index, symbol.length);
+        if (cents < 0)
+            buffer[--index] = '-';
+
+        return end;
+    }
+
+    /**
+     *  format method:
+     *  This method writes the amount into the buffer at the offset as
+     *  ASCII bytes and returns the offset just past it.  The buffer must
+     *  have room for length(cents) bytes.
+     */
+
+    public int format(long cents, byte[] buffer, int offset) {
+        int     end     = offset + length(cents);
+        int     index   = end;
+        long    whole   = cents / 100;
+        int     part    = (int) Math.abs(cents % 100);
+
+        if (whole > 0)
+            whole = -whole;
+
+        buffer[--index] = (byte) ('0' + part % 10);
+        buffer[--index] = (byte) ('0' + part / 10);
+        buffer[--index] = '.';
+        do {
+            buffer[--index] = (byte) ('0' - whole % 10);
+            whole /= 10;
+        } while (whole != 0);
+
+        for (int sym = symbol.length - 1; sym >= 0; sym--)
+            buffer[--index] = (byte) symbol[sym];
+        if (cents < 0)
+            buffer[--index] = '-';
+
+        return end;
+    }
+
+    /**
+     *  format method:
+     *  This method returns the amount as a String, for labels and other
+     *  APIs that need one.
+     */
+
+    public String format(long cents) {
+        char[]  buffer  = new char[length(cents)];
+
+        format(cents, buffer, 0);
+        return new String(buffer);
+    }
+}
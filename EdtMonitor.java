@@ -0,0 +1,223 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  The EdtMonitor class measures how long the event dispatch thread spends
+ *  on each AWT event.  It is installed as the top of the system event queue
+ *  and times every dispatch into a LatencyHistogram.  A watchdog thread
+ *  checks on the dispatch in progress, and when one runs over the frame
+ *  budget it logs a stack sample of the EDT while it is still stuck.  A
+ *  summary of the dispatch times is logged once a minute and at exit.
+ *
+ *  The monitor is opt-in; run the app with -Dskateshop.edt.monitor=true, and
+ *  optionally -Dskateshop.edt.budgetMs=N to change the 16 ms budget.
+ *
+ *  An event that opens a modal dialog dispatches the dialog's events from
+ *  inside its own dispatch.  Such an event is not recorded; the events
+ *  dispatched inside it are, and the time between them is idle.
+ */
+
+public class EdtMonitor extends EventQueue {
+    private static final long   DEFAULT_BUDGET_MILLIS   = 16;
+    private static final long   SUMMARY_SECONDS         = 60;
+
+    private static volatile EdtMonitor  installed;
+
+    private final long              budgetNanos;
+    private final LatencyHistogram  histogram   = new LatencyHistogram();
+
+    // State of the dispatch in progress, written only by the EDT.
+    private volatile Thread         edt;
+    private volatile long           dispatchStart;  // 0 when idle
+    private volatile long           dispatchNumber;
+    private volatile AWTEvent       dispatchEvent;
+    private int                     depth;
+
+    private EdtMonitor(long budgetMillis) {
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     *  installIfEnabled method:
+     *  This method installs the monitor if the skateshop.edt.monitor system
+     *  property is true.
+     */
+
+    public static void installIfEnabled() {
+        if (Boolean.getBoolean("skateshop.edt.monitor"))
+            install(Long.getLong("skateshop.edt.budgetMs",
+                                 DEFAULT_BUDGET_MILLIS));
+    }
+
+    /**
+     *  install method:
+     *  This method starts timing the event dispatch thread with the given
+     *  budget per event.  It does nothing if a monitor is already running.
+     */
+
+    public static synchronized EdtMonitor install(long budgetMillis) {
+        Thread  watchdog;
+
+        if (installed != null)
+            return installed;
+
+        installed = new EdtMonitor(budgetMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(installed);
+
+        watchdog = new Thread(installed::watch, "edt-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                installed.logSummary();
+                Log.flush();
+            }, "edt-summary"));
+
+        Log.info("Monitoring the event dispatch thread, budget {} ms",
+                 budgetMillis);
+        return installed;
+    }
+
+    /**
+     *  getInstalled method:
+     *  This method returns the running monitor, or null if there is none.
+     */
+
+    public static EdtMonitor getInstalled() {
+        return installed;
+    }
+
+    /**
+     *  getHistogram method:
+     *  This method returns the dispatch times, in nanoseconds.
+     */
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        // Waiting for an event is not a stall.
+        dispatchStart = 0;
+        return super.getNextEvent();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long    number  = ++dispatchNumber;
+        long    start   = System.nanoTime();
+
+        if (edt == null)
+            edt = Thread.currentThread();
+
+        dispatchEvent = event;
+        dispatchStart = start;
+        depth++;
+
+        try {
+            super.dispatchEvent(event);
+        }
+        finally {
+            long    end     = System.nanoTime();
+
+            depth--;
+
+            // Only record an event that did not dispatch others inside it.
+            if (dispatchNumber == number) {
+                histogram.record(end - start);
+                if (end - start > budgetNanos)
+                    Log.warn("EDT took {} ms to dispatch {}",
+                             TimeUnit.NANOSECONDS.toMillis(end - start),
+                             describe(event));
+            }
+
+            // An outer event carries on where a nested one left off.
+            if (depth > 0) {
+                dispatchNumber++;
+                dispatchStart = end;
+            }
+            else {
+                dispatchStart = 0;
+            }
+        }
+    }
+
+    /**
+     *  watch method:
+     *  The watchdog thread's loop.  It samples the EDT's stack once for each
+     *  dispatch that runs over the budget, and logs the summary each minute.
+     */
+
+    private void watch() {
+        long    reported    = 0;
+        long    lastSummary = System.nanoTime();
+        long    period      = Math.max(budgetNanos / 4,
+                                       TimeUnit.MILLISECONDS.toNanos(1));
+
+        while (true) {
+            long    number  = dispatchNumber;
+            long    start   = dispatchStart;
+            long    now;
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(period);
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+
+            now = System.nanoTime();
+            if (start != 0 && now - start > budgetNanos &&
+                number == dispatchNumber && number != reported) {
+                reported = number;
+                logStall(now - start);
+            }
+
+            if (now - lastSummary >=
+                TimeUnit.SECONDS.toNanos(SUMMARY_SECONDS)) {
+                lastSummary = now;
+                logSummary();
+            }
+        }
+    }
+
+    private void logStall(long elapsed) {
+        Thread          thread  = edt;
+        StringBuilder   stack   = new StringBuilder();
+
+        if (thread == null)
+            return;
+
+        for (StackTraceElement frame : thread.getStackTrace())
+            stack.append("\n\tat ").append(frame);
+
+        Log.warn("EDT stalled for {} ms dispatching {}:{}",
+                 TimeUnit.NANOSECONDS.toMillis(elapsed),
+                 describe(dispatchEvent), stack);
+    }
+
+    private static String describe(AWTEvent event) {
+        return event == null ? "an event"
+                             : event.getClass().getSimpleName() + " from " +
+                               event.getSource().getClass().getSimpleName();
+    }
+
+    /**
+     *  logSummary method:
+     *  This method logs the dispatch time percentiles so far.
+     */
+
+    public void logSummary() {
+        if (histogram.getCount() == 0)
+            return;
+
+        Log.info("EDT dispatch: {} events, p50/p99/max {} us",
+                 histogram.getCount(),
+                 histogram.getPercentile(50) / 1_000 + "/" +
+                 histogram.getPercentile(99) / 1_000 + "/" +
+                 histogram.getMax() / 1_000);
+    }
+}
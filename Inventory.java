@@ -0,0 +1,341 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  The Inventory class keeps the number of each part in stock, by SKU.  It
+ *  is loaded from a text file with one entry per line:
+ *
+ *      # A comment
+ *      DECK-MT|12
+ *
+ *  Parts that are not listed, such as the None choices, are not tracked and
+ *  never run out.
+ *
+ *  A purchase reserves one of each of its parts with compare-and-set on
+ *  that part's count, so counts never go below zero however many registers
+ *  sell at once.  If any part has run out, the parts already reserved are
+ *  put back and the whole order fails; no lock is taken.
+ *
+ *  The counts in the file are as of an order in the journal, given by a
+ *  line "@journal|N" for the last order they include.  replay takes off the
+ *  parts of every journaled order after that one, so a register that
+ *  stopped without saving (a crash, say) starts with the right counts; save
+ *  writes the counts and the last order back at close.  The file is locked
+ *  while it is loaded, so two registers can not both keep counts in it.
+ */
+
+public class Inventory implements AutoCloseable {
+    private static final char   SEPARATOR   = '|';
+    private static final String JOURNAL_KEY = "@journal";
+
+    private final Path                                  file;
+    private final FileChannel                           lockChannel;
+    private final ConcurrentHashMap<String, AtomicLong> stock   =
+        new ConcurrentHashMap<String, AtomicLong>();
+
+    private long                                        journalSequence =
+        -1;     // Not known: the counts are taken as current
+
+    private Inventory(Path file) throws IOException {
+        this.file = file;
+        lockChannel = OrderJournal.lock(
+                file.resolveSibling(file.getFileName() + ".lock"));
+    }
+
+    /**
+     *  load method:
+     *  This method reads the stock levels from the named file.  A missing
+     *  file gives an inventory that tracks nothing.  It throws an
+     *  IOException if another register has the file loaded.
+     */
+
+    public static Inventory load(String fileName) throws IOException {
+        Inventory   inventory   = new Inventory(Paths.get(fileName));
+
+        try {
+            inventory.read(fileName);
+        }
+        catch (IOException | RuntimeException ex) {
+            inventory.close();
+            throw ex;
+        }
+
+        return inventory;
+    }
+
+    private void read(String fileName) throws IOException {
+        String      line;
+        int         lineNumber  = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(
+                file, StandardCharsets.UTF_8)) {
+            while ((line = reader.readLine()) != null) {
+                int     separator;
+                long    count;
+
+                lineNumber++;
+                line = line.trim();
+
+                // Skip blank lines and comments.
+                if (line.isEmpty() || line.charAt(0) == '#')
+                    continue;
+
+                separator = line.indexOf(SEPARATOR);
+                if (separator < 0)
+                    throw new IOException(fileName + ":" + lineNumber +
+                                          ": unrecognized line '" + line +
+                                          "'");
+
+                try {
+                    count = Long.parseLong(
+                            line.substring(separator + 1).trim());
+                }
+                catch (NumberFormatException ex) {
+                    count = -1;
+                }
+                if (count < 0)
+                    throw new IOException(fileName + ":" + lineNumber +
+                                          ": bad quantity in '" + line + "'");
+
+                if (line.substring(0, separator).trim().equals(JOURNAL_KEY))
+                    journalSequence = count;
+                else if (stock.putIfAbsent(
+                        line.substring(0, separator).trim(),
+                        new AtomicLong(count)) != null)
+                    throw new IOException(fileName + ":" + lineNumber +
+                                          ": duplicate SKU in '" + line +
+                                          "'");
+            }
+        }
+        catch (NoSuchFileException ex) {
+            Log.info("No {}; stock is not tracked", fileName);
+        }
+    }
+
+    /**
+     *  replay method:
+     *  This method takes off the parts of each order in the journal after
+     *  the last one the counts include, using the catalog each order was
+     *  priced from.  It returns the number of orders replayed.
+     */
+
+    public long replay(OrderJournal journal) throws IOException {
+        HashMap<Long, Catalog>  catalogs    = new HashMap<Long, Catalog>();
+        long[]                  replayed    = new long[1];
+
+        if (stock.isEmpty())
+            return 0;
+        if (journalSequence < 0) {
+            Log.info("{} does not say which orders it includes; taking its " +
+                     "counts as current", file.getFileName());
+            return 0;
+        }
+
+        journal.replay(journalSequence,
+                       (sequence, fingerprint, order) -> {
+            Catalog catalog = catalogs.get(fingerprint);
+
+            if (catalog == null) {
+                catalog = journal.loadCatalog(fingerprint);
+                catalogs.put(fingerprint, catalog);
+            }
+
+            // Counts may already be short of a part sold after a restock
+            // that was never saved; they stop at zero.
+            takeAll(catalog, order.getChoice(0), order.getChoice(1),
+                    order.getChoice(2), order.getChoice(3));
+            journalSequence = sequence;
+            replayed[0]++;
+        });
+
+        return replayed[0];
+    }
+
+    private void takeAll(Catalog catalog, int deck, int trucks, int wheels,
+                         int accessoryMask) {
+        Catalog.Category    accessories = catalog.getCategory("Accessory");
+        int                 mask        = accessoryMask;
+
+        take(catalog.getCategory("Deck").getSku(deck));
+        take(catalog.getCategory("Trucks").getSku(trucks));
+        take(catalog.getCategory("Wheels").getSku(wheels));
+        while (mask != 0) {
+            take(accessories.getSku(Integer.numberOfTrailingZeros(mask)));
+            mask &= mask - 1;
+        }
+    }
+
+    /**
+     *  getStock method:
+     *  This method returns the number of a part in stock, or -1 if the part
+     *  is not tracked.
+     */
+
+    public long getStock(String sku) {
+        AtomicLong  count   = stock.get(sku);
+
+        return count == null ? -1 : count.get();
+    }
+
+    /**
+     *  restock method:
+     *  This method adds received parts to the stock, starting to track the
+     *  part if it was not.  The new count reaches the file at the next
+     *  save.
+     */
+
+    public void restock(String sku, long received) {
+        stock.computeIfAbsent(sku, key -> new AtomicLong()).addAndGet(received);
+    }
+
+    /**
+     *  reserve method:
+     *  This method takes one of each part in an order, given as indices
+     *  into the catalog it was priced from.  It returns null if every part
+     *  was reserved, or the SKU of a part that is out of stock, in which
+     *  case nothing is taken.
+     */
+
+    public String reserve(Catalog catalog, int deck, int trucks, int wheels,
+                          int accessoryMask) {
+        String              deckSku     =
+            catalog.getCategory("Deck").getSku(deck);
+        String              trucksSku   =
+            catalog.getCategory("Trucks").getSku(trucks);
+        String              wheelsSku   =
+            catalog.getCategory("Wheels").getSku(wheels);
+        Catalog.Category    accessories = catalog.getCategory("Accessory");
+        int                 taken       = 0;    // Accessories reserved
+        int                 mask        = accessoryMask;
+
+        if (!take(deckSku))
+            return deckSku;
+        if (!take(trucksSku)) {
+            putBack(deckSku);
+            return trucksSku;
+        }
+        if (!take(wheelsSku)) {
+            putBack(deckSku);
+            putBack(trucksSku);
+            return wheelsSku;
+        }
+
+        while (mask != 0) {
+            int     bit     = mask & -mask;
+            String  sku     =
+                accessories.getSku(Integer.numberOfTrailingZeros(bit));
+
+            if (!take(sku)) {
+                release(catalog, deck, trucks, wheels, taken);
+                return sku;
+            }
+            taken |= bit;
+            mask &= mask - 1;
+        }
+
+        return null;
+    }
+
+    /**
+     *  release method:
+     *  This method puts back the parts of an order that was reserved but
+     *  could not be completed.
+     */
+
+    public void release(Catalog catalog, int deck, int trucks, int wheels,
+                        int accessoryMask) {
+        Catalog.Category    accessories = catalog.getCategory("Accessory");
+        int                 mask        = accessoryMask;
+
+        putBack(catalog.getCategory("Deck").getSku(deck));
+        putBack(catalog.getCategory("Trucks").getSku(trucks));
+        putBack(catalog.getCategory("Wheels").getSku(wheels));
+        while (mask != 0) {
+            putBack(accessories.getSku(Integer.numberOfTrailingZeros(mask)));
+            mask &= mask - 1;
+        }
+    }
+
+    /**
+     *  take method:
+     *  This method takes one of a part if there is one.  It returns false
+     *  only for a tracked part that is out of stock.
+     */
+
+    private boolean take(String sku) {
+        AtomicLong  count   = stock.get(sku);
+        long        current;
+
+        if (count == null)
+            return true;
+
+        do {
+            current = count.get();
+            if (current <= 0)
+                return false;
+        } while (!count.compareAndSet(current, current - 1));
+
+        return true;
+    }
+
+    private void putBack(String sku) {
+        AtomicLong  count   = stock.get(sku);
+
+        if (count != null)
+            count.incrementAndGet();
+    }
+
+    /**
+     *  save method:
+     *  This method writes the current stock levels back to the file,
+     *  replacing it in one step, as of the given last journaled order.  It
+     *  must be called when no orders are in progress, so that the counts
+     *  include exactly the orders up to that one.
+     */
+
+    public void save(long lastSequence) throws IOException {
+        TreeMap<String, Long>   levels  = new TreeMap<String, Long>();
+        Path                    temp;
+
+        if (stock.isEmpty())
+            return;
+
+        stock.forEach((sku, count) -> levels.put(sku, count.get()));
+
+        temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(
+                temp, StandardCharsets.UTF_8)) {
+            out.write("# Parts in stock, written when the shop closed.\n");
+            out.write(JOURNAL_KEY + SEPARATOR + lastSequence + "\n");
+            for (Map.Entry<String, Long> entry : levels.entrySet()) {
+                out.write(entry.getKey() + SEPARATOR + entry.getValue());
+                out.write('\n');
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        journalSequence = lastSequence;
+    }
+
+    /**
+     *  close method:
+     *  This method lets go of the stock file for another register.
+     */
+
+    public void close() throws IOException {
+        lockChannel.close();
+    }
+}
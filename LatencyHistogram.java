@@ -0,0 +1,141 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  The LatencyHistogram class counts durations in buckets so that
+ *  percentiles can be read at any time without keeping every sample.
+ *
+ *  Each power of two is split into eight buckets, so a percentile is
+ *  reported to within about 12% of the true value, for any duration from
+ *  nanoseconds to years, in a fixed 4 KB of counts.  Recording is a few
+ *  shifts and one atomic increment, so any number of threads can record
+ *  into one histogram cheaply.
+ */
+
+public class LatencyHistogram {
+    // Buckets per power of two, as a number of bits.
+    private static final int    SUB_BUCKET_BITS     = 3;
+    private static final int    SUB_BUCKETS         = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for every exponent of a positive long.
+    private static final int    BUCKET_COUNT        =
+        (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray   counts  =
+        new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder         total   = new LongAdder();
+    private final AtomicLong        max     = new AtomicLong();
+
+    /**
+     *  record method:
+     *  This method adds one duration.  Negative durations count as zero.
+     */
+
+    public void record(long value) {
+        long    sample  = Math.max(value, 0);
+
+        counts.incrementAndGet(bucketOf(sample));
+        total.add(sample);
+        if (sample > max.get())
+            max.accumulateAndGet(sample, Math::max);
+    }
+
+    /**
+     *  bucketOf method:
+     *  This method returns the bucket a value is counted in.
+     */
+
+    static int bucketOf(long value) {
+        int     exponent;
+
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS +
+               (int) ((value >>> (exponent - SUB_BUCKET_BITS)) &
+                      (SUB_BUCKETS - 1));
+    }
+
+    /**
+     *  upperBoundOf method:
+     *  This method returns the largest value counted in a bucket.
+     */
+
+    static long upperBoundOf(int bucket) {
+        int     exponent;
+        int     sub;
+
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        sub = bucket % SUB_BUCKETS;
+        if (exponent == 62 && sub == SUB_BUCKETS - 1)
+            return Long.MAX_VALUE;
+        return ((long) (SUB_BUCKETS + sub + 1) <<
+                (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        long    count   = 0;
+
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+            count += counts.get(bucket);
+
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long    count   = getCount();
+
+        return count == 0 ? 0 : total.sum() / count;
+    }
+
+    /**
+     *  getPercentile method:
+     *  This method returns the value that the given percentage (0 to 100)
+     *  of the durations are at or below, or 0 if nothing is recorded.
+     */
+
+    public long getPercentile(double percent) {
+        long[]  snapshot    = new long[BUCKET_COUNT];
+        long    count       = 0;
+        long    rank;
+        long    seen        = 0;
+
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            count += snapshot[bucket];
+        }
+
+        if (count == 0)
+            return 0;
+
+        rank = Math.max(1, (long) Math.ceil(count * percent / 100.0));
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank)
+                return Math.min(upperBoundOf(bucket), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     *  reset method:
+     *  This method clears the histogram.  Durations recorded while it runs
+     *  may or may not be kept.
+     */
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+            counts.set(bucket, 0);
+        total.reset();
+        max.set(0);
+    }
+}
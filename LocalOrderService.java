@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ *  The LocalOrderService class prices and sells orders in this process,
+ *  with the catalog from a CatalogStore, the inventory, the order journal,
+ *  the sales totals and the sales metrics.  It is safe for any number of
+ *  threads: pricing works on the snapshot current when the request arrives,
+ *  stock is reserved with compare-and-set, the journal serializes its own
+ *  appends, and the totals and metrics are striped counters.  A purchase
+ *  returns only once its journal record is on disk; purchases arriving
+ *  together share one disk write.
+ *
+ *  Each catalog version is saved to the journal when it goes live, so that
+ *  the journal can decode its records whatever the catalog is later.  The
+ *  stock counts are brought up to date from the journal when the service
+ *  starts, so sales made before a crash are not sold again.
+ */
+
+public class LocalOrderService implements OrderService {
+    private final CatalogStore      store;
+    private final Inventory         inventory;
+    private final OrderJournal      journal;
+    private final SalesAggregator   sales   = new SalesAggregator();
+    private final SalesMetrics      metrics = new SalesMetrics(sales);
+
+    // Purchases hold the read lock and close the write lock, so that close
+    // waits for the purchases in progress and no more start after it.
+    private final ReentrantReadWriteLock    purchases   =
+        new ReentrantReadWriteLock();
+    private boolean                         closed;
+
+    public LocalOrderService(CatalogStore store, Inventory inventory,
+                             OrderJournal journal) throws IOException {
+        long    replayed;
+
+        this.store      = store;
+        this.inventory  = inventory;
+        this.journal    = journal;
+
+        replayed = inventory.replay(journal);
+        if (replayed > 0)
+            Log.info("Took {} journaled orders not yet in the stock counts " +
+                     "off the stock", replayed);
+
+        saveCatalog(store.current());
+        store.addListener(this::saveCatalog);
+    }
+
+    /**
+     *  saveCatalog method:
+     *  This method saves a catalog to the journal ahead of its first sale.
+     *  A failure is only logged; the purchase tries again.
+     */
+
+    private void saveCatalog(CatalogStore.Snapshot snapshot) {
+        try {
+            journal.saveCatalog(snapshot.getCatalog());
+        }
+        catch (IOException ex) {
+            Log.warn("Unable to save catalog version {} to the journal: {}",
+                     snapshot.getVersion(), ex.getMessage());
+        }
+    }
+
+    public SalesMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SalesAggregator getSales() {
+        return sales;
+    }
+
+    public CatalogView getCatalog() {
+        return store.current();
+    }
+
+    public void addCatalogListener(Consumer<CatalogView> listener) {
+        store.addListener(listener::accept);
+    }
+
+    public Status quote(long catalogVersion, int deck, int trucks,
+                        int wheels, int accessoryMask, Quote quote) {
+        CatalogStore.Snapshot   snapshot    = store.current();
+
+        if (snapshot.getVersion() != catalogVersion)
+            return Status.STALE;
+
+        price(snapshot, deck, trucks, wheels, accessoryMask, quote);
+        return quote.getSubtotalCents() == 0 ? Status.REJECTED : Status.OK;
+    }
+
+    public Status purchase(long catalogVersion, int deck, int trucks,
+                           int wheels, int accessoryMask, Quote quote)
+            throws IOException {
+        purchases.readLock().lock();
+        try {
+            if (closed)
+                throw new IOException("The order service is closed");
+
+            return sell(catalogVersion, deck, trucks, wheels, accessoryMask,
+                        quote);
+        }
+        finally {
+            purchases.readLock().unlock();
+        }
+    }
+
+    private Status sell(long catalogVersion, int deck, int trucks,
+                        int wheels, int accessoryMask, Quote quote)
+            throws IOException {
+        CatalogStore.Snapshot   snapshot    = store.current();
+        OrderRecord             order       = new OrderRecord();
+        String                  unavailable;
+        long                    sequence;
+
+        if (snapshot.getVersion() != catalogVersion)
+            return Status.STALE;
+
+        price(snapshot, deck, trucks, wheels, accessoryMask, quote);
+        if (quote.getSubtotalCents() == 0) {
+            metrics.recordRejection();
+            return Status.REJECTED;
+        }
+
+        unavailable = inventory.reserve(snapshot.getCatalog(), deck, trucks,
+                                        wheels, accessoryMask);
+        if (unavailable != null) {
+            quote.setUnavailable(unavailable);
+            metrics.recordOutOfStock();
+            return Status.OUT_OF_STOCK;
+        }
+
+        // The sale is only confirmed once its record is on disk, so that a
+        // crash cannot lose an order the customer was told went through.
+        try {
+            journal.saveCatalog(snapshot.getCatalog());
+            order.set(System.currentTimeMillis(), deck, trucks, wheels,
+                      accessoryMask, quote);
+            sequence = journal.append(snapshot.getCatalog().getFingerprint(),
+                                      order);
+            journal.awaitDurable(sequence);
+        }
+        catch (IOException ex) {
+            // The sale did not happen; put the parts back.
+            inventory.release(snapshot.getCatalog(), deck, trucks, wheels,
+                              accessoryMask);
+            throw ex;
+        }
+        sales.record(snapshot.getCatalog(), deck, trucks, wheels,
+                     accessoryMask);
+        metrics.recordPurchase(snapshot.getCatalog(), deck, trucks, wheels,
+                               accessoryMask, quote.getSubtotalCents(),
+                               quote.getSalesTaxCents());
+        return Status.OK;
+    }
+
+    private void price(CatalogStore.Snapshot snapshot, int deck, int trucks,
+                       int wheels, int accessoryMask, Quote quote) {
+        long    start   = System.nanoTime();
+
+        snapshot.getEngine().price(deck, trucks, wheels, accessoryMask,
+                                   quote);
+        metrics.recordPricing(System.nanoTime() - start);
+    }
+
+    /**
+     *  close method:
+     *  This method stops taking purchases and waits for the ones in
+     *  progress, so that the stock levels it saves include exactly the
+     *  journaled orders.  It then stops watching the catalog and closes the
+     *  journal, making every recorded sale durable.
+     */
+
+    public void close() throws IOException {
+        purchases.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+
+            try {
+                store.close();
+                inventory.save(journal.getLastSequence());
+            }
+            finally {
+                try {
+                    inventory.close();
+                }
+                finally {
+                    journal.close();
+                }
+            }
+        }
+        finally {
+            purchases.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ *  The Log class writes the application's log messages.
+ *
+ *  Messages below the current level are dropped before anything is built:
+ *  callers pass a format with {} placeholders and the arguments separately,
+ *  or a Supplier for messages that are expensive to compute, so a disabled
+ *  message costs one comparison; the overloads taking a long spare a hot
+ *  path from boxing its argument just to have it dropped.  Enabled messages
+ *  are put on a bounded queue and formatted and printed by a background
+ *  writer thread, so the calling thread (usually the event dispatch thread)
+ *  never waits on console I/O.  If the queue is full the message is dropped
+ *  and counted rather than blocking the caller.
+ *
+ *  The starting level is taken from the skateshop.log.level system property
+ *  and defaults to INFO.
+ */
+
+public final class Log {
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final int                    QUEUE_CAPACITY  = 4096;
+    // How long flush waits for the writer thread to print.
+    private static final long                   FLUSH_TIMEOUT_MILLIS = 2000;
+
+    private static volatile Level               level;
+    private static final ArrayBlockingQueue<Entry> queue        =
+        new ArrayBlockingQueue<Entry>(QUEUE_CAPACITY);
+    private static final AtomicLong             dropped         =
+        new AtomicLong();
+    private static final PrintStream            out             = System.out;
+
+    static {
+        level = parseLevel(System.getProperty("skateshop.log.level"),
+                           Level.INFO);
+
+        Thread  writer  = new Thread(Log::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        // Print whatever is still queued when the application exits.
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    /**
+     *  Entry class:
+     *  One queued message.  It is formatted by the writer thread.  An entry
+     *  with a latch is not a message but a flush, counted down once
+     *  everything queued before it has been printed.
+     */
+
+    private static final class Entry {
+        final Level             level;
+        final String            format;
+        final Object[]          args;
+        final Throwable         thrown;     // Printed with its stack trace
+        final CountDownLatch    flushed;
+
+        Entry(Level level, String format, Object[] args, Throwable thrown) {
+            this.level      = level;
+            this.format     = format;
+            this.args       = args;
+            this.thrown     = thrown;
+            this.flushed    = null;
+        }
+
+        Entry(CountDownLatch flushed) {
+            this.level      = null;
+            this.format     = null;
+            this.args       = null;
+            this.thrown     = null;
+            this.flushed    = flushed;
+        }
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 &&
+               messageLevel != Level.OFF;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    /**
+     *  parseLevel method:
+     *  This method converts a level name to a Level, ignoring case.  It
+     *  returns the default if the name is null or not a level.
+     */
+
+    static Level parseLevel(String name, Level defaultLevel) {
+        if (name != null) {
+            for (Level candidate : Level.values()) {
+                if (candidate.name().equalsIgnoreCase(name.trim()))
+                    return candidate;
+            }
+        }
+
+        return defaultLevel;
+    }
+
+    public static void debug(String message) {
+        if (isEnabled(Level.DEBUG))
+            enqueue(Level.DEBUG, message, null);
+    }
+
+    public static void debug(String format, Object arg) {
+        if (isEnabled(Level.DEBUG))
+            enqueue(Level.DEBUG, format, new Object[] { arg });
+    }
+
+    public static void debug(String format, long arg) {
+        if (isEnabled(Level.DEBUG))
+            enqueue(Level.DEBUG, format, new Object[] { arg });
+    }
+
+    public static void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG))
+            enqueue(Level.DEBUG, format, new Object[] { arg1, arg2 });
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG))
+            enqueue(Level.DEBUG, message.get(), null);
+    }
+
+    public static void info(String message) {
+        if (isEnabled(Level.INFO))
+            enqueue(Level.INFO, message, null);
+    }
+
+    public static void info(String format, Object arg) {
+        if (isEnabled(Level.INFO))
+            enqueue(Level.INFO, format, new Object[] { arg });
+    }
+
+    public static void info(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO))
+            enqueue(Level.INFO, format, new Object[] { arg1, arg2 });
+    }
+
+    public static void info(String format, Object arg1, Object arg2,
+                            Object arg3) {
+        if (isEnabled(Level.INFO))
+            enqueue(Level.INFO, format, new Object[] { arg1, arg2, arg3 });
+    }
+
+    public static void warn(String message) {
+        if (isEnabled(Level.WARN))
+            enqueue(Level.WARN, message, null);
+    }
+
+    public static void warn(String format, Object arg) {
+        if (isEnabled(Level.WARN))
+            enqueue(Level.WARN, format, new Object[] { arg });
+    }
+
+    public static void warn(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN))
+            enqueue(Level.WARN, format, new Object[] { arg1, arg2 });
+    }
+
+    public static void warn(String format, Object arg1, Object arg2,
+                            Object arg3) {
+        if (isEnabled(Level.WARN))
+            enqueue(Level.WARN, format, new Object[] { arg1, arg2, arg3 });
+    }
+
+    /**
+     *  error method:
+     *  This method logs a message followed by the stack trace of what was
+     *  thrown, including its causes.
+     */
+
+    public static void error(String message, Throwable thrown) {
+        if (isEnabled(Level.ERROR) &&
+            !queue.offer(new Entry(Level.ERROR, message, null, thrown)))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     *  enqueue method:
+     *  This method hands a message to the writer thread without waiting.
+     */
+
+    private static void enqueue(Level messageLevel, String format,
+                                Object[] args) {
+        if (!queue.offer(new Entry(messageLevel, format, args, null)))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     *  drainLoop method:
+     *  The writer thread's main loop.  It waits for a message and then
+     *  prints everything that has been queued, flushing once per batch.
+     */
+
+    private static void drainLoop() {
+        ArrayList<Entry>    batch   = new ArrayList<Entry>(QUEUE_CAPACITY);
+        StringBuilder       text    = new StringBuilder(256);
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+
+            queue.drainTo(batch);
+            write(batch, text);
+            batch.clear();
+        }
+    }
+
+    /**
+     *  flush method:
+     *  This method returns once every message logged before it has been
+     *  printed, including a batch the writer thread has already taken off
+     *  the queue and is still printing.  If the writer does not get to it
+     *  in time, what is still queued is printed here instead.
+     */
+
+    public static void flush() {
+        CountDownLatch      flushed = new CountDownLatch(1);
+        ArrayList<Entry>    batch   = new ArrayList<Entry>();
+
+        try {
+            if (queue.offer(new Entry(flushed), FLUSH_TIMEOUT_MILLIS,
+                            TimeUnit.MILLISECONDS) &&
+                flushed.await(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                return;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        queue.drainTo(batch);
+        write(batch, new StringBuilder(256));
+    }
+
+    private static void write(ArrayList<Entry> batch, StringBuilder text) {
+        long    lost    = dropped.getAndSet(0);
+
+        synchronized (out) {
+            if (lost > 0)
+                out.println("WARN: " + lost + " log messages were dropped");
+
+            for (Entry entry : batch) {
+                if (entry.flushed != null)
+                    continue;
+
+                text.setLength(0);
+                text.append(entry.level.name()).append(": ");
+                format(text, entry.format, entry.args);
+                out.println(text);
+                if (entry.thrown != null)
+                    entry.thrown.printStackTrace(out);
+            }
+            out.flush();
+        }
+
+        for (Entry entry : batch) {
+            if (entry.flushed != null)
+                entry.flushed.countDown();
+        }
+    }
+
+    /**
+     *  format method:
+     *  This method appends the format to the builder, replacing each {} with
+     *  the next argument.
+     */
+
+    static void format(StringBuilder text, String format, Object[] args) {
+        int     start       = 0;
+        int     argIndex    = 0;
+        int     mark;
+
+        if (args == null) {
+            text.append(format);
+            return;
+        }
+
+        while ((mark = format.indexOf("{}", start)) >= 0 &&
+               argIndex < args.length) {
+            text.append(format, start, mark).append(args[argIndex++]);
+            start = mark + 2;
+        }
+        text.append(format, start, format.length());
+    }
+}
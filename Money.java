@@ -0,0 +1,122 @@
+import java.math.BigDecimal;
+
+/**
+ *  The Money class works with amounts of money held as a long number of
+ *  cents, and with rates held as a long number of millionths (so a 6% rate
+ *  is 60000).  Sums of cents are exact, and every method works on
+ *  primitives so that the pricing path never allocates.
+ */
+
+public final class Money {
+    public static final long    RATE_SCALE  = 1_000_000;
+
+    private Money() {
+    }
+
+    /**
+     *  applyRate method:
+     *  This method returns cents times the rate, rounded half away from
+     *  zero to a whole cent.  It throws an ArithmeticException if the
+     *  product does not fit in a long.
+     */
+
+    public static long applyRate(long cents, long rateMillionths) {
+        return roundMillionths(Math.multiplyExact(cents, rateMillionths));
+    }
+
+    /**
+     *  roundMillionths method:
+     *  This method rounds an amount in millionths of a cent, such as a sum
+     *  of cents times rates, half away from zero to a whole cent.
+     */
+
+    public static long roundMillionths(long millionths) {
+        long    half    = RATE_SCALE / 2;
+
+        return millionths >= 0 ? (millionths + half) / RATE_SCALE
+                               : (millionths - half) / RATE_SCALE;
+    }
+
+    /**
+     *  parse method:
+     *  This method converts an amount such as "60.00", "2.5" or "3" to
+     *  cents without going through a double.  It returns -1 if the text is
+     *  not an amount with at most two decimal places.
+     */
+
+    public static long parse(String text) {
+        return parseScaled(text, 2);
+    }
+
+    /**
+     *  parseRate method:
+     *  This method converts a rate such as "0.06" to millionths.  It
+     *  returns -1 if the text is not a rate with at most six decimal places.
+     */
+
+    public static long parseRate(String text) {
+        return parseScaled(text, 6);
+    }
+
+    private static long parseScaled(String text, int places) {
+        long    value       = 0;
+        int     fraction    = -1;   // Digits seen after the point
+
+        if (text.isEmpty() || text.equals("."))
+            return -1;
+
+        for (int index = 0; index < text.length(); index++) {
+            char    ch  = text.charAt(index);
+
+            if (ch == '.' && fraction < 0) {
+                fraction = 0;
+            }
+            else if (ch >= '0' && ch <= '9' && fraction < places &&
+                     value <= (Long.MAX_VALUE - 9) / 10) {
+                value = value * 10 + (ch - '0');
+                if (fraction >= 0)
+                    fraction++;
+            }
+            else {
+                return -1;
+            }
+        }
+
+        // Scale up to the whole unit.
+        for (int digits = Math.max(fraction, 0); digits < places; digits++) {
+            if (value > Long.MAX_VALUE / 10)
+                return -1;
+            value *= 10;
+        }
+
+        return value;
+    }
+
+    /**
+     *  appendTo method:
+     *  This method appends an amount in cents as dollars with two decimal
+     *  places, e.g. 13600 as 136.00.
+     */
+
+    public static StringBuilder appendTo(StringBuilder text, long cents) {
+        long    whole   = cents / 100;
+        long    part    = Math.abs(cents % 100);
+
+        if (cents < 0 && whole == 0)
+            text.append('-');
+        text.append(whole).append('.');
+        if (part < 10)
+            text.append('0');
+        return text.append(part);
+    }
+
+    /**
+     *  toBigDecimal method:
+     *  This method returns the exact dollar value of an amount in cents, for
+     *  APIs that need one.  It allocates, so keep it off the hot path.
+     */
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ *  The OrderCodec class encodes a priced order (an OrderRecord) in a
+ *  compact binary form.  The order journal stores each order this way.  A
+ *  record is:
+ *
+ *      byte    version         VERSION
+ *      varint  timestamp       less the base timestamp, zigzag encoded
+ *      varint  choice count
+ *      varint  choice          for each category: part index or mask
+ *      varint  subtotal        in cents, zigzag encoded
+ *      varint  sales tax       in cents, zigzag encoded
+ *
+ *  A varint holds seven bits per byte, low bits first, with the top bit
+ *  set on every byte but the last, so small numbers take one byte.  Choices
+ *  are unsigned; signed values are zigzag encoded so that a negative one,
+ *  such as a refund, is as short as a positive one.  The total is not
+ *  stored; it is always the subtotal plus the sales tax.
+ *
+ *  The timestamp is stored as its distance from a base the caller gives,
+ *  normally the timestamp of the record before it, so that it takes two or
+ *  three bytes rather than eight; the same base must be given to decode
+ *  it.  An order a minute after the one before takes about 14 bytes,
+ *  against about 120 as JSON, so about a ninth of the size rather than a
+ *  tenth: the version byte and the two amounts are most of what is left.
+ *  With a base of 0 the timestamp takes six bytes.
+ *
+ *  Encoding and decoding work on the caller's buffer and record and do not
+ *  allocate.  A record carries no length, so a stream of them needs one
+ *  framing it, or to be decoded in order.  A new layout must use a new
+ *  version so that old records can still be read.
+ */
+
+public final class OrderCodec {
+    public static final int     VERSION         = 1;
+
+    // The most categories a record may have.
+    public static final int     MAX_CHOICES     = 64;
+
+    // The longest a record can be, for sizing buffers.
+    public static final int     MAX_RECORD_SIZE = 1 + 10 + 1 +
+                                                  MAX_CHOICES * 5 + 10 + 10;
+
+    private OrderCodec() {
+    }
+
+    /**
+     *  encode method:
+     *  This method writes a record at the buffer's position and advances
+     *  it, storing its timestamp relative to the base timestamp.  It
+     *  throws an IllegalArgumentException if the record has more than
+     *  MAX_CHOICES choices, which decode would refuse, and a
+     *  BufferOverflowException if the record does not fit; a buffer of
+     *  MAX_RECORD_SIZE bytes always has room.
+     */
+
+    public static void encode(OrderRecord record, long baseTimestamp,
+                              ByteBuffer buffer) {
+        int     count   = record.getChoiceCount();
+
+        if (count > MAX_CHOICES)
+            throw new IllegalArgumentException("Order record has " + count +
+                                               " choices, more than " +
+                                               MAX_CHOICES);
+
+        buffer.put((byte) VERSION);
+        putVarint(buffer, zigzag(record.getTimestamp() - baseTimestamp));
+        putVarint(buffer, count);
+        for (int category = 0; category < count; category++)
+            putVarint(buffer, record.getChoice(category) & 0xFFFFFFFFL);
+        putVarint(buffer, zigzag(record.getSubtotalCents()));
+        putVarint(buffer, zigzag(record.getSalesTaxCents()));
+    }
+
+    /**
+     *  decode method:
+     *  This method reads a record at the buffer's position into the given
+     *  record and advances the position past it, given the base timestamp
+     *  it was encoded with.  It throws an IOException if the bytes there
+     *  are not a whole record of a known version.
+     */
+
+    public static void decode(ByteBuffer buffer, long baseTimestamp,
+                              OrderRecord record) throws IOException {
+        int     version;
+        long    timestamp;
+        long    count;
+
+        try {
+            version = buffer.get();
+            if (version != VERSION)
+                throw new IOException("Unknown order record version " +
+                                      version);
+
+            timestamp = baseTimestamp + unzigzag(getVarint(buffer));
+            count = getVarint(buffer);
+            if (count > MAX_CHOICES)
+                throw new IOException("Order record has " + count +
+                                      " choices");
+
+            record.setChoiceCount((int) count);
+            for (int category = 0; category < count; category++) {
+                long    choice  = getVarint(buffer);
+
+                if (choice > 0xFFFFFFFFL)
+                    throw new IOException("Order record choice out of " +
+                                          "range");
+                record.setChoice(category, (int) choice);
+            }
+
+            record.set(timestamp, unzigzag(getVarint(buffer)),
+                       unzigzag(getVarint(buffer)));
+        }
+        catch (BufferUnderflowException ex) {
+            throw new IOException("Order record is cut short", ex);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     *  getVarint method:
+     *  This method reads a varint of up to ten bytes, the most a long
+     *  needs.
+     */
+
+    private static long getVarint(ByteBuffer buffer) throws IOException {
+        long    value   = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte    next    = buffer.get();
+
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0)
+                return value;
+        }
+
+        throw new IOException("Order record has a varint over ten bytes");
+    }
+}
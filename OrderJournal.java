@@ -0,0 +1,645 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ *  The OrderJournal class keeps an append-only record of completed
+ *  purchases.
+ *
+ *  The journal is a series of segment files in one directory, each memory
+ *  mapped and filled with records one after another.  Appending a record
+ *  copies it into the mapping, which takes microseconds and never waits
+ *  for the disk.  A background flusher forces everything appended since
+ *  its last pass to disk in one go (group commit); callers that need to
+ *  know a record is on disk can wait for it with awaitDurable.  When a
+ *  segment is full the journal moves on to a new one, so a long day only
+ *  adds segments.
+ *
+ *  Each record is:
+ *
+ *      int     magic           RECORD_MAGIC once the record is complete
+ *      int     checksum        CRC32C of the bytes after this field
+ *      long    sequence        1 for the first order, counting up
+ *      long    catalog         fingerprint of the catalog it was priced from
+ *      short   length          of the order that follows
+ *      order                   encoded by OrderCodec
+ *
+ *  Each order's timestamp is encoded relative to the one before it in the
+ *  segment (the first relative to 0), so a segment is read from its start.
+ *  The parts are indices into the catalog, which can be reloaded with its
+ *  parts in a different order, so saveCatalog keeps a copy of each version
+ *  of the catalog in the directory, named by its fingerprint, and
+ *  loadCatalog reads it back to decode old records.
+ *
+ *  On open the newest segment is scanned and appending resumes after its
+ *  last valid record, so a torn write at a crash is simply overwritten.
+ *  Only one process may append to a directory: the journal holds a lock on
+ *  its lock file while it is open, and opening a directory that another
+ *  journal has open fails.
+ */
+
+public class OrderJournal implements AutoCloseable {
+    private static final int    HEADER_SIZE     = 26;
+    private static final int    MAX_RECORD_SIZE = HEADER_SIZE +
+                                                  OrderCodec.MAX_RECORD_SIZE;
+    private static final int    RECORD_MAGIC    = 0x534B4F33;   // "SKO3"
+    private static final long   SEGMENT_SIZE    = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX  = "orders-";
+    private static final String SEGMENT_SUFFIX  = ".journal";
+    private static final String LOCK_FILE       = "journal.lock";
+    private static final String CATALOG_PREFIX  = "catalog-";
+    private static final String CATALOG_SUFFIX  = ".txt";
+
+    // The flusher waits at most this long before forcing new records.
+    private static final long   FLUSH_INTERVAL_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Path              directory;
+    private final ReentrantLock     lock        = new ReentrantLock();
+    private final Condition         appended    = lock.newCondition();
+    private final Condition         flushed     = lock.newCondition();
+    private final ByteBuffer        scratch     =
+        ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final CRC32C            crc         = new CRC32C();
+    private final Thread            flusher;
+    private final FileChannel       lockChannel;
+    private final Set<Long>         savedCatalogs   =
+        ConcurrentHashMap.newKeySet();
+
+    // Guarded by lock.
+    private FileChannel             channel;
+    private MappedByteBuffer        segment;
+    private int                     segmentNumber;
+    private int                     position;       // Next free byte
+    private int                     flushedPosition;
+    private long                    lastTimestamp;  // Of the last record
+    private long                    nextSequence;
+    private long                    durableSequence;
+    private boolean                 closed;
+    private IOException             flushFailure;   // Stops the flusher
+
+    private final long              recovered;
+
+    /**
+     *  OrderJournal constructor:
+     *  This opens the journal in the given directory, creating it if
+     *  needed, and recovers the position after the last complete record.
+     */
+
+    public OrderJournal(String directoryName) throws IOException {
+        directory = Paths.get(directoryName);
+        Files.createDirectories(directory);
+        lockChannel = lock(directory.resolve(LOCK_FILE));
+
+        try {
+            segmentNumber = Math.max(findLastSegment(), 1);
+            openSegment(segmentNumber);
+
+            // Find the end of the records already in the segment.
+            Reader  reader          = new Reader(segmentPath(segmentNumber));
+            long    lastSequence    = 0;
+            long    count           = 0;
+            while (reader.next()) {
+                lastSequence = reader.getSequence();
+                lastTimestamp = reader.getOrder().getTimestamp();
+                count++;
+            }
+            recovered = count;
+            position = reader.getEnd();
+            flushedPosition = position;
+
+            // Continue the numbering of an older segment if this one is
+            // empty.
+            if (lastSequence == 0 && segmentNumber > 1)
+                lastSequence = lastSequenceOf(segmentNumber - 1);
+            nextSequence = lastSequence + 1;
+            durableSequence = lastSequence;
+        }
+        catch (IOException | RuntimeException ex) {
+            lockChannel.close();
+            if (channel != null)
+                channel.close();
+            throw ex;
+        }
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     *  lock method:
+     *  This method takes an exclusive lock on the lock file, held until the
+     *  channel it returns is closed.  It throws an IOException if another
+     *  process, or another journal in this one, holds it.
+     */
+
+    static FileChannel lock(Path lockFile) throws IOException {
+        FileChannel lockChannel = FileChannel.open(lockFile,
+                                                   StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE);
+        FileLock    lock;
+
+        try {
+            lock = lockChannel.tryLock();
+        }
+        catch (OverlappingFileLockException ex) {
+            lock = null;
+        }
+        catch (IOException ex) {
+            lockChannel.close();
+            throw ex;
+        }
+
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(lockFile + " is locked; another register " +
+                                  "is already using it");
+        }
+
+        return lockChannel;
+    }
+
+    /**
+     *  getRecoveredCount method:
+     *  This method returns the number of records found in the current
+     *  segment when the journal was opened.
+     */
+
+    public long getRecoveredCount() {
+        return recovered;
+    }
+
+    /**
+     *  append method:
+     *  This method records one purchase, priced from the catalog with the
+     *  given fingerprint, and returns its sequence number.  The record is
+     *  in the journal when this returns; it reaches the disk on the
+     *  flusher's next pass.
+     */
+
+    public long append(long catalog, OrderRecord order) throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                throw new IOException("The order journal is closed");
+
+            if (position + MAX_RECORD_SIZE > SEGMENT_SIZE)
+                rollSegment();
+
+            // Build the record and its checksum off to the side, then copy
+            // it in and mark it complete with the magic number last.
+            scratch.clear().position(HEADER_SIZE);
+            OrderCodec.encode(order, lastTimestamp, scratch);
+
+            int     size        = scratch.position();
+            long    sequence    = nextSequence++;
+
+            scratch.putLong(8, sequence);
+            scratch.putLong(16, catalog);
+            scratch.putShort(24, (short) (size - HEADER_SIZE));
+
+            crc.reset();
+            crc.update(scratch.array(), 8, size - 8);
+            scratch.putInt(4, (int) crc.getValue());
+
+            segment.put(position + 4, scratch.array(), 4, size - 4);
+            segment.putInt(position, RECORD_MAGIC);
+            position += size;
+            lastTimestamp = order.getTimestamp();
+
+            appended.signal();
+            return sequence;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *  getLastSequence method:
+     *  This method returns the sequence number of the last record appended,
+     *  or 0 if there are none.
+     */
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return nextSequence - 1;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *  saveCatalog method:
+     *  This method keeps a copy of the catalog in the directory, if there
+     *  is not one already, so that the records priced from it can be
+     *  decoded after the catalog has changed.  Call it before appending the
+     *  first record priced from a catalog.
+     */
+
+    public void saveCatalog(Catalog catalog) throws IOException {
+        long    fingerprint = catalog.getFingerprint();
+        Path    file        = catalogPath(fingerprint);
+        Path    temp;
+
+        if (savedCatalogs.contains(fingerprint))
+            return;
+
+        if (!Files.exists(file)) {
+            temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(
+                    temp, StandardCharsets.UTF_8)) {
+                catalog.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        savedCatalogs.add(fingerprint);
+    }
+
+    /**
+     *  loadCatalog method:
+     *  This method reads back the catalog with the given fingerprint, as
+     *  saved by saveCatalog.
+     */
+
+    public Catalog loadCatalog(long fingerprint) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(
+                catalogPath(fingerprint), StandardCharsets.UTF_8)) {
+            return Catalog.parse(reader, catalogPath(fingerprint).toString());
+        }
+    }
+
+    private Path catalogPath(long fingerprint) {
+        return directory.resolve(String.format("%s%016x%s", CATALOG_PREFIX,
+                                               fingerprint, CATALOG_SUFFIX));
+    }
+
+    /**
+     *  Visitor interface:
+     *  Receives the records read back by replay.  The order is reused for
+     *  the next record, so keep what is needed from it, not the order.
+     */
+
+    public interface Visitor {
+        void visit(long sequence, long catalog, OrderRecord order)
+                throws IOException;
+    }
+
+    /**
+     *  replay method:
+     *  This method reads back, in order, every record after the given
+     *  sequence number.  The segments before the one holding that record
+     *  are not read.
+     */
+
+    public void replay(long afterSequence, Visitor visitor)
+            throws IOException {
+        int     last;
+        int     first;
+
+        lock.lock();
+        try {
+            last = segmentNumber;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        // Work back to the segment the records after afterSequence start in.
+        for (first = last; first > 1; first--) {
+            Reader  reader  = new Reader(segmentPath(first));
+
+            if (reader.next() && reader.getSequence() <= afterSequence)
+                break;
+        }
+
+        for (int number = first; number <= last; number++) {
+            Reader  reader  = new Reader(segmentPath(number));
+
+            while (reader.next()) {
+                long    sequence    = reader.getSequence();
+
+                if (sequence > afterSequence)
+                    visitor.visit(sequence, reader.getCatalog(),
+                                  reader.getOrder());
+            }
+        }
+    }
+
+    /**
+     *  awaitDurable method:
+     *  This method waits until the record with the given sequence number
+     *  has been forced to disk.  It throws an IOException if the journal
+     *  could not force it or closed first.  An interrupt does not end the
+     *  wait, since the record is in the journal and will reach the disk;
+     *  the thread's interrupt status is kept.
+     */
+
+    public void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (flushFailure != null)
+                    throw new IOException("The order journal could not " +
+                                          "be forced to disk", flushFailure);
+                if (closed)
+                    throw new IOException("The order journal is closed");
+                flushed.awaitUninterruptibly();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *  close method:
+     *  This method forces any remaining records to disk and closes the
+     *  journal.
+     */
+
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            force();
+            channel.close();
+            flushed.signalAll();
+            appended.signal();
+        }
+        finally {
+            lock.unlock();
+            lockChannel.close();
+        }
+    }
+
+    /**
+     *  flushLoop method:
+     *  The flusher thread waits for new records, gives other appends a
+     *  moment to join them, and then forces them all to disk at once.  The
+     *  force itself runs without the lock so appends are never held up by
+     *  the disk.
+     */
+
+    private void flushLoop() {
+        MappedByteBuffer    target;
+        int                 from;
+        int                 to;
+        long                sequence;
+
+        try {
+            while (true) {
+                lock.lock();
+                try {
+                    while (!closed && flushedPosition == position)
+                        appended.await();
+                    if (closed)
+                        return;
+                }
+                finally {
+                    lock.unlock();
+                }
+
+                // Let a burst of appends collect before forcing.
+                TimeUnit.NANOSECONDS.sleep(FLUSH_INTERVAL_NANOS);
+
+                lock.lock();
+                try {
+                    if (closed)
+                        return;
+                    target = segment;
+                    from = flushedPosition;
+                    to = position;
+                    sequence = nextSequence - 1;
+                }
+                finally {
+                    lock.unlock();
+                }
+
+                try {
+                    target.force(from, to - from);
+                }
+                catch (UncheckedIOException ex) {
+                    lock.lock();
+                    try {
+                        flushFailure = ex.getCause();
+                        flushed.signalAll();
+                    }
+                    finally {
+                        lock.unlock();
+                    }
+                    Log.error("Unable to force the order journal to disk",
+                              ex);
+                    return;
+                }
+
+                lock.lock();
+                try {
+                    // A segment roll forces everything itself, so only
+                    // move the mark if this is still the same segment.
+                    if (target == segment && flushedPosition < to)
+                        flushedPosition = to;
+                    durableSequence = Math.max(durableSequence, sequence);
+                    flushed.signalAll();
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            // Exit quietly; close() forces whatever is left.
+        }
+    }
+
+    // Called with the lock held.
+    private void force() {
+        if (position > flushedPosition) {
+            segment.force(flushedPosition, position - flushedPosition);
+            flushedPosition = position;
+        }
+        durableSequence = nextSequence - 1;
+        flushed.signalAll();
+    }
+
+    // Called with the lock held.
+    private void rollSegment() throws IOException {
+        force();
+        channel.close();
+        openSegment(segmentNumber + 1);
+        segmentNumber++;
+        flushedPosition = 0;
+        Log.info("Order journal moved to segment {}", segmentNumber);
+    }
+
+    private void openSegment(int number) throws IOException {
+        channel = FileChannel.open(segmentPath(number),
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                              SEGMENT_SIZE);
+        position = 0;
+        lastTimestamp = 0;
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX,
+                                               number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     *  findLastSegment method:
+     *  This method returns the highest segment number in the directory, or
+     *  0 if there are none.
+     */
+
+    private int findLastSegment() throws IOException {
+        int     last    = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String  name    = file.getFileName().toString();
+                String  digits  = name.substring(SEGMENT_PREFIX.length(),
+                                                 name.length() -
+                                                 SEGMENT_SUFFIX.length());
+
+                try {
+                    last = Math.max(last, Integer.parseInt(digits));
+                }
+                catch (NumberFormatException ex) {
+                    // Not one of ours.
+                }
+            }
+        }
+
+        return last;
+    }
+
+    /**
+     *  lastSequenceOf method:
+     *  This method returns the sequence number of the last valid record in
+     *  an older, full segment.
+     */
+
+    private long lastSequenceOf(int number) throws IOException {
+        Reader  reader  = new Reader(segmentPath(number));
+        long    last    = 0;
+
+        while (reader.next())
+            last = reader.getSequence();
+
+        return last;
+    }
+
+    /**
+     *  Reader class:
+     *  Reads the valid records of one segment file in order.
+     */
+
+    static class Reader {
+        private final MappedByteBuffer  buffer;
+        private final ByteBuffer        record      =
+            ByteBuffer.allocate(MAX_RECORD_SIZE);
+        private final CRC32C            crc         = new CRC32C();
+        private final OrderRecord       order       = new OrderRecord();
+        private int                     offset;
+        private int                     end;        // Of the current record
+
+        Reader(Path segmentFile) throws IOException {
+            try (FileChannel channel = FileChannel.open(segmentFile,
+                    StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                     channel.size());
+            }
+        }
+
+        /**
+         *  next method:
+         *  This method moves to the next record and returns false at the
+         *  end of the valid records.
+         */
+
+        boolean next() {
+            int     candidate   = end;
+            int     size;
+
+            if (candidate + HEADER_SIZE > buffer.capacity() ||
+                buffer.getInt(candidate) != RECORD_MAGIC)
+                return false;
+
+            size = HEADER_SIZE + (buffer.getShort(candidate + 24) & 0xFFFF);
+            if (size > MAX_RECORD_SIZE || candidate + size > buffer.capacity())
+                return false;
+
+            buffer.get(candidate, record.array(), 0, size);
+            crc.reset();
+            crc.update(record.array(), 8, size - 8);
+            if (buffer.getInt(candidate + 4) != (int) crc.getValue())
+                return false;
+
+            // The order's timestamp is relative to the one before it.
+            record.limit(size).position(HEADER_SIZE);
+            try {
+                OrderCodec.decode(record, order.getTimestamp(), order);
+            }
+            catch (IOException ex) {
+                return false;
+            }
+            if (record.hasRemaining())
+                return false;
+
+            offset = candidate;
+            end = candidate + size;
+            return true;
+        }
+
+        /**
+         *  getEnd method:
+         *  This method returns the offset just past the current record, or
+         *  0 before the first.
+         */
+
+        int getEnd() {
+            return end;
+        }
+
+        long getSequence() {
+            return buffer.getLong(offset + 8);
+        }
+
+        long getCatalog() {
+            return buffer.getLong(offset + 16);
+        }
+
+        OrderRecord getOrder() {
+            return order;
+        }
+    }
+}
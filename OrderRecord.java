@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ *  OrderRecord class:
+ *  This class holds a priced order as it is stored and sent: when it was
+ *  made, the choice made in each category of the catalog, and its subtotal
+ *  and sales tax in cents.  A choice is the part's index for a category
+ *  where one part is chosen, or the mask of the parts chosen for one where
+ *  any number are (such as the accessories).  Like a Quote, a record is
+ *  mutable so that one can be reused for every order encoded or decoded.
+ */
+
+public class OrderRecord {
+    private long    timestamp;      // System.currentTimeMillis() of the order
+    private int[]   choices     = new int[4];
+    private int     choiceCount;
+    private long    subtotal;       // Cost of the parts
+    private long    salesTax;       // Sales tax on the subtotal
+
+    /**
+     *  set method:
+     *  This method stores an order of the four categories the register
+     *  sells, as priced into the quote.
+     */
+
+    public void set(long timestamp, int deck, int trucks, int wheels,
+                    int accessoryMask, Quote quote) {
+        setChoiceCount(4);
+        choices[0] = deck;
+        choices[1] = trucks;
+        choices[2] = wheels;
+        choices[3] = accessoryMask;
+        set(timestamp, quote.getSubtotalCents(), quote.getSalesTaxCents());
+    }
+
+    /**
+     *  set method:
+     *  This method stores an order with a choice for each category, in
+     *  catalog order.
+     */
+
+    public void set(long timestamp, int[] choices, int choiceCount,
+                    long subtotalCents, long salesTaxCents) {
+        setChoiceCount(choiceCount);
+        System.arraycopy(choices, 0, this.choices, 0, choiceCount);
+        set(timestamp, subtotalCents, salesTaxCents);
+    }
+
+    void set(long timestamp, long subtotalCents, long salesTaxCents) {
+        this.timestamp  = timestamp;
+        this.subtotal   = subtotalCents;
+        this.salesTax   = salesTaxCents;
+    }
+
+    /**
+     *  setChoiceCount method:
+     *  This method sets the number of categories, growing the choices only
+     *  the first time a record holds more than before.
+     */
+
+    void setChoiceCount(int count) {
+        if (count > choices.length)
+            choices = Arrays.copyOf(choices, count);
+        choiceCount = count;
+    }
+
+    void setChoice(int category, int choice) {
+        choices[category] = choice;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getChoiceCount() {
+        return choiceCount;
+    }
+
+    public int getChoice(int category) {
+        if (category >= choiceCount)
+            throw new IndexOutOfBoundsException("Category " + category +
+                                                " of " + choiceCount);
+        return choices[category];
+    }
+
+    public long getSubtotalCents() {
+        return subtotal;
+    }
+
+    public long getSalesTaxCents() {
+        return salesTax;
+    }
+
+    public long getTotalCents() {
+        return subtotal + salesTax;
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *  The OrderServer class lets several registers share one catalog, pricing
+ *  engine and order journal.  It listens on the loopback address and
+ *  serves each connection on its own thread; on a Java runtime with
+ *  virtual threads each connection gets a virtual thread, so thousands of
+ *  idle or busy registers cost little.
+ *
+ *  The protocol is one line per request and one reply per request, in
+ *  UTF-8.  Amounts are in cents.
+ *
+ *      CATALOG
+ *          OK <version> <line count>, then the catalog in catalog.txt form
+ *      QUOTE <version> <deck> <trucks> <wheels> <accessory mask>
+ *      PURCHASE <version> <deck> <trucks> <wheels> <accessory mask>
+ *          OK <subtotal> <sales tax> <total>
+ *          REJECTED                    (no items have been selected)
+ *          OUT_OF_STOCK <sku>          (purchase only; nothing was sold)
+ *          STALE <current version>     (fetch the catalog again)
+ *
+ *  Any request may also be answered with ERROR and a reason.
+ *
+ *  Usage:  java OrderServer [port] [catalog] [tax]
+ */
+
+public class OrderServer implements AutoCloseable {
+    public static final int     DEFAULT_PORT    = 7171;
+    private static final int    BACKLOG         = 4096;
+
+    private final OrderService      service;
+    private final ServerSocket      serverSocket;
+    private final ExecutorService   connections;
+
+    /**
+     *  OrderServer constructor:
+     *  This binds the server to a loopback port; 0 picks a free one.
+     */
+
+    public OrderServer(OrderService service, int port) throws IOException {
+        this.service    = service;
+
+        serverSocket = new ServerSocket(port, BACKLOG,
+                                        InetAddress.getLoopbackAddress());
+        connections = newConnectionExecutor();
+    }
+
+    /**
+     *  newConnectionExecutor method:
+     *  This method returns an executor that starts a virtual thread per
+     *  connection where the runtime has them, and otherwise a pool of
+     *  daemon threads that grows with the number of connections.
+     */
+
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            Method  factory = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException ex) {
+            Log.info("Virtual threads are not available; using a thread " +
+                     "per connection");
+            return Executors.newCachedThreadPool(task -> {
+                Thread  thread  = new Thread(task, "order-connection");
+
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     *  start method:
+     *  This method starts accepting connections.
+     */
+
+    public void start() {
+        Thread  acceptor    = new Thread(this::acceptLoop, "order-acceptor");
+
+        acceptor.start();
+        Log.info("Order server listening on port {}", getPort());
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket  socket  = serverSocket.accept();
+
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> serve(socket));
+            }
+            catch (IOException ex) {
+                if (!serverSocket.isClosed())
+                    Log.error("Unable to accept a connection", ex);
+            }
+        }
+    }
+
+    /**
+     *  serve method:
+     *  This method answers the requests on one connection until the client
+     *  closes it.  Replies are flushed once no more requests are waiting,
+     *  so a client may send several requests before reading the replies.
+     */
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                    connection.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            Quote           quote   = new Quote();
+            StringBuilder   reply   = new StringBuilder(64);
+            String          line;
+
+            while ((line = in.readLine()) != null) {
+                reply.setLength(0);
+                handle(line, quote, reply);
+                out.append(reply).append('\n');
+                if (!in.ready())
+                    out.flush();
+            }
+        }
+        catch (IOException ex) {
+            Log.debug("Connection ended: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     *  handle method:
+     *  This method answers one request.
+     */
+
+    private void handle(String line, Quote quote, StringBuilder reply) {
+        String[]    fields  = line.trim().split(" +");
+
+        try {
+            switch (fields[0]) {
+                case "CATALOG":
+                    if (fields.length != 1)
+                        break;
+                    catalog(reply);
+                    return;
+
+                case "QUOTE":
+                case "PURCHASE":
+                    if (fields.length != 6)
+                        break;
+                    order(fields, quote, reply);
+                    return;
+
+                default:
+                    break;
+            }
+
+            reply.append("ERROR unknown request");
+        }
+        catch (NumberFormatException ex) {
+            reply.setLength(0);
+            reply.append("ERROR bad number");
+        }
+        catch (IndexOutOfBoundsException ex) {
+            reply.setLength(0);
+            reply.append("ERROR unknown part");
+        }
+        catch (IOException ex) {
+            Log.error("Unable to record an order", ex);
+            reply.setLength(0);
+            reply.append("ERROR the order could not be recorded");
+        }
+    }
+
+    private void catalog(StringBuilder reply) throws IOException {
+        OrderService.CatalogView    view    = service.getCatalog();
+        StringBuilder               text    = new StringBuilder(1024);
+        int                         lines   = 0;
+
+        view.getCatalog().writeTo(text);
+        for (int index = 0; index < text.length(); index++) {
+            if (text.charAt(index) == '\n')
+                lines++;
+        }
+
+        reply.append("OK ").append(view.getVersion()).append(' ')
+             .append(lines).append('\n').append(text);
+        // The caller ends the reply.
+        reply.setLength(reply.length() - 1);
+    }
+
+    private void order(String[] fields, Quote quote, StringBuilder reply)
+            throws IOException {
+        long                    version = Long.parseLong(fields[1]);
+        int                     deck    = Integer.parseInt(fields[2]);
+        int                     trucks  = Integer.parseInt(fields[3]);
+        int                     wheels  = Integer.parseInt(fields[4]);
+        int                     mask    = Integer.parseInt(fields[5]);
+        OrderService.Status     status;
+
+        status = fields[0].equals("PURCHASE")
+                 ? service.purchase(version, deck, trucks, wheels, mask, quote)
+                 : service.quote(version, deck, trucks, wheels, mask, quote);
+
+        switch (status) {
+            case OK:
+                reply.append("OK ").append(quote.getSubtotalCents())
+                     .append(' ').append(quote.getSalesTaxCents())
+                     .append(' ').append(quote.getTotalCents());
+                break;
+            case REJECTED:
+                reply.append("REJECTED");
+                break;
+            case OUT_OF_STOCK:
+                reply.append("OUT_OF_STOCK ").append(quote.getUnavailableSku());
+                break;
+            case STALE:
+                reply.append("STALE ")
+                     .append(service.getCatalog().getVersion());
+                break;
+        }
+    }
+
+    /**
+     *  close method:
+     *  This method stops accepting connections and drops the open ones.
+     */
+
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     *  main method:
+     *  This runs an order server for the registers on this machine.
+     */
+
+    public static void main(String[] args) {
+        int     port        = args.length > 0 ? Integer.parseInt(args[0])
+                                              : DEFAULT_PORT;
+        String  catalogFile = args.length > 1 ? args[1] : "catalog.txt";
+        String  taxFile     = args.length > 2 ? args[2] : "tax.txt";
+
+        try {
+            CatalogStore        store   =
+                new CatalogStore(catalogFile, taxFile);
+            LocalOrderService   service =
+                new LocalOrderService(store, Inventory.load("inventory.txt"),
+                                      new OrderJournal("journal"));
+            OrderServer         server  = new OrderServer(service, port);
+
+            service.getMetrics().register();
+            store.startWatching();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                    service.close();
+                }
+                catch (IOException ex) {
+                    Log.error("Unable to shut down cleanly", ex);
+                }
+            }, "order-server-close"));
+
+            server.start();
+        }
+        catch (IOException ex) {
+            Log.error("The order server could not start", ex);
+            Log.flush();
+            System.exit(1);
+        }
+    }
+}
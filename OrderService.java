@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ *  The OrderService interface is what a register uses to price and sell
+ *  orders.  LocalOrderService does the work in the same process, and
+ *  RemoteOrderService sends it to an OrderServer that several registers
+ *  share.
+ *
+ *  Parts are given as indices into a version of the catalog, and every
+ *  request carries that version.  If the catalog has changed since, the
+ *  request is answered with STALE and nothing is priced or sold; the caller
+ *  should show the new catalog from getCatalog() and let the customer check
+ *  the order again.
+ */
+
+public interface OrderService extends AutoCloseable {
+    /**
+     *  Status enum:
+     *  The outcome of a quote or purchase.
+     */
+
+    enum Status {
+        OK,             // Priced, and for a purchase, recorded
+        REJECTED,       // No items have been selected
+        OUT_OF_STOCK,   // A part is out of stock; see the quote
+        STALE           // The catalog version is out of date
+    }
+
+    /**
+     *  CatalogView interface:
+     *  One version of the catalog.
+     */
+
+    interface CatalogView {
+        long getVersion();
+
+        Catalog getCatalog();
+    }
+
+    /**
+     *  getCatalog method:
+     *  This method returns the latest catalog the service knows of.
+     */
+
+    CatalogView getCatalog();
+
+    /**
+     *  addCatalogListener method:
+     *  This method registers a listener for new versions of the catalog.
+     *  It may be called on any thread.
+     */
+
+    void addCatalogListener(Consumer<CatalogView> listener);
+
+    /**
+     *  quote method:
+     *  This method prices an order into the quote without selling it.
+     */
+
+    Status quote(long catalogVersion, int deck, int trucks, int wheels,
+                 int accessoryMask, Quote quote) throws IOException;
+
+    /**
+     *  purchase method:
+     *  This method prices an order into the quote and records the sale.
+     *  An IOException means the sale may not have been recorded.
+     */
+
+    Status purchase(long catalogVersion, int deck, int trucks, int wheels,
+                    int accessoryMask, Quote quote) throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,204 @@
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.JList;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListSelectionEvent;
+
+/**
+ *  The PartSearchField class is a search box for a part list.  Each
+ *  keystroke narrows the list to the matching parts through the category's
+ *  PartSearchIndex.
+ *
+ *  What is selected is kept as parts rather than rows, so a search does not
+ *  change it: a selected part that the search hides stays selected, and is
+ *  shown selected again when the search is cleared.  Panels ask the field,
+ *  not the list, for the selection.
+ *
+ *  A large category takes seconds to index, so the index is not built
+ *  until the field is first used, and then on a background thread; the
+ *  list is narrowed once it is ready.
+ */
+
+public class PartSearchField extends JTextField {
+    private final JList<String>     list;
+    private final CatalogListModel  model;
+    private final BitSet            selectedParts   = new BitSet();
+    private boolean                 updating;   // Ignore our own changes
+    private Catalog.Category        indexing;   // Being indexed, or null
+
+    public PartSearchField(JList<String> list, CatalogListModel model) {
+        super(1);
+        this.list   = list;
+        this.model  = model;
+
+        setToolTipText("Type part of a name or SKU to search");
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                filter();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                filter();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            public void focusGained(FocusEvent e) {
+                buildIndex();
+            }
+        });
+        list.addListSelectionListener(this::selectionChanged);
+    }
+
+    /**
+     *  setCategory method:
+     *  This method shows every part of a new category, or a new version of
+     *  this one, with nothing selected.
+     */
+
+    public void setCategory(Catalog.Category category) {
+        setText("");
+        updating = true;
+        try {
+            model.setCategory(category);
+            list.clearSelection();
+            selectedParts.clear();
+        }
+        finally {
+            updating = false;
+        }
+    }
+
+    /**
+     *  clear method:
+     *  This method clears the search, showing every part again.
+     */
+
+    public void clear() {
+        setText("");
+    }
+
+    /**
+     *  getSelectedPart method:
+     *  This method returns the index of the first selected part, or -1 if
+     *  none is selected.
+     */
+
+    public int getSelectedPart() {
+        return selectedParts.nextSetBit(0);
+    }
+
+    /**
+     *  getSelectedMask method:
+     *  This method returns a bit mask of the selected parts, where bit n is
+     *  set when part n is selected.
+     */
+
+    public int getSelectedMask() {
+        int     mask    = 0;
+
+        for (int part = selectedParts.nextSetBit(0); part >= 0 && part < 32;
+             part = selectedParts.nextSetBit(part + 1))
+            mask |= 1 << part;
+
+        return mask;
+    }
+
+    /**
+     *  filter method:
+     *  This method narrows the list to the current search and selects the
+     *  rows of the selected parts that it shows.
+     */
+
+    private void filter() {
+        if (!getText().isBlank() &&
+            !model.getCategory().isSearchIndexBuilt()) {
+            buildIndex();
+            return;
+        }
+
+        updating = true;
+        try {
+            model.setQuery(getText());
+            list.clearSelection();
+            for (int part = selectedParts.nextSetBit(0); part >= 0;
+                 part = selectedParts.nextSetBit(part + 1)) {
+                int     row     = model.getRow(part);
+
+                if (row >= 0)
+                    list.addSelectionInterval(row, row);
+            }
+            if (model.getSize() > 0)
+                list.ensureIndexIsVisible(Math.max(list.getMinSelectionIndex(),
+                                                   0));
+        }
+        finally {
+            updating = false;
+        }
+    }
+
+    /**
+     *  buildIndex method:
+     *  This method starts building the search index of the category shown
+     *  on a background thread, unless it is built or being built, and
+     *  filters the list again when it is done.
+     */
+
+    private void buildIndex() {
+        Catalog.Category    category    = model.getCategory();
+
+        if (category.isSearchIndexBuilt() || category == indexing)
+            return;
+
+        indexing = category;
+        CompletableFuture.runAsync(category::getSearchIndex).whenComplete(
+                (done, ex) -> SwingUtilities.invokeLater(() -> {
+            if (indexing == category)
+                indexing = null;
+            if (ex != null)
+                Log.error("Unable to index the parts for search", ex);
+            else
+                filter();
+        }));
+    }
+
+    /**
+     *  selectionChanged method:
+     *  This method records the parts the user selected or deselected in the
+     *  rows that changed.
+     */
+
+    private void selectionChanged(ListSelectionEvent e) {
+        int     last    = Math.min(e.getLastIndex(), model.getSize() - 1);
+
+        if (updating)
+            return;
+
+        // Choosing a part in a single-choice list replaces the choice, even
+        // if the search hides it.
+        if (list.getSelectionMode() == ListSelectionModel.SINGLE_SELECTION) {
+            selectedParts.clear();
+            if (!list.isSelectionEmpty())
+                selectedParts.set(model.getPartIndex(list.getSelectedIndex()));
+            return;
+        }
+
+        for (int row = e.getFirstIndex(); row <= last; row++) {
+            int     part    = model.getPartIndex(row);
+
+            if (list.isSelectedIndex(row))
+                selectedParts.set(part);
+            else
+                selectedParts.clear(part);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ *  The PartSearchIndex class finds the parts of a category whose name or SKU
+ *  has words starting with what the user typed, such as "mas thr" for
+ *  Master Thrasher.
+ *
+ *  Every word of every name and SKU is stored once, lower case, in one
+ *  sorted array, with the parts that contain it stored after one another in
+ *  a second array in the same order.  The words starting with a prefix are
+ *  then one range of the sorted array, found by two binary searches, and
+ *  their parts one range of the second, so a search costs about the number
+ *  of matches and never looks at a name.
+ */
+
+public class PartSearchIndex {
+    private final int       partCount;
+
+    // Distinct words, sorted.
+    private final String[]  words;
+    // The parts containing words[n] are parts[starts[n]] to
+    // parts[starts[n + 1] - 1].
+    private final int[]     starts;
+    private final int[]     parts;
+
+    /**
+     *  PartSearchIndex constructor:
+     *  This indexes the names and SKUs of a category.
+     */
+
+    public PartSearchIndex(Catalog.Category category) {
+        HashMap<String, Integer>    ids     = new HashMap<String, Integer>();
+        ArrayList<String>           tokens  = new ArrayList<String>();
+        long[]                      pairs   = new long[256];
+        int                         count   = 0;
+        int[]                       ranks;
+        int[]                       postings;
+        int                         total;
+        int                         word    = -1;
+
+        partCount = category.size();
+
+        // Pair each word, by the order it was first seen, with each part.
+        for (int part = 0; part < partCount; part++) {
+            tokens.clear();
+            split(category.getName(part), tokens);
+            split(category.getSku(part), tokens);
+
+            for (String token : tokens) {
+                Integer id  = ids.get(token);
+
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(token, id);
+                }
+                if (count == pairs.length)
+                    pairs = Arrays.copyOf(pairs, count * 2);
+                pairs[count++] = (long) id << 32 | part;
+            }
+        }
+
+        // Sort the words, then the pairs by word and part.
+        words = ids.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        ranks = new int[words.length];
+        for (int rank = 0; rank < words.length; rank++)
+            ranks[ids.get(words[rank])] = rank;
+        for (int index = 0; index < count; index++)
+            pairs[index] = (long) ranks[(int) (pairs[index] >>> 32)] << 32 |
+                           (pairs[index] & 0xFFFFFFFFL);
+        Arrays.sort(pairs, 0, count);
+
+        postings = new int[count];
+        starts = new int[words.length + 1];
+
+        // A word can appear twice in one part; list the part once.
+        total = count;
+        count = 0;
+        for (int index = 0; index < total; index++) {
+            int     rank    = (int) (pairs[index] >>> 32);
+
+            if (index > 0 && pairs[index] == pairs[index - 1])
+                continue;
+            while (word < rank)
+                starts[++word] = count;
+            postings[count++] = (int) pairs[index];
+        }
+        while (word < words.length)
+            starts[++word] = count;
+
+        parts = Arrays.copyOf(postings, count);
+    }
+
+    /**
+     *  split method:
+     *  This method adds the lower case words of some text, the runs of
+     *  letters and digits, to a list.
+     */
+
+    private static void split(String text, ArrayList<String> tokens) {
+        int     start   = -1;
+
+        for (int index = 0; index <= text.length(); index++) {
+            boolean inWord  = index < text.length() &&
+                              Character.isLetterOrDigit(text.charAt(index));
+
+            if (inWord && start < 0) {
+                start = index;
+            }
+            else if (!inWord && start >= 0) {
+                tokens.add(text.substring(start, index)
+                               .toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     *  search method:
+     *  This method returns the indices, in list order, of the parts that
+     *  have a word starting with each word of the query, or null if the
+     *  query has no words and every part matches.
+     */
+
+    public int[] search(String query) {
+        ArrayList<String>   prefixes    = new ArrayList<String>();
+        BitSet              matches     = null;
+        int[]               result;
+        int                 index       = 0;
+
+        split(query, prefixes);
+        if (prefixes.isEmpty())
+            return null;
+
+        for (String prefix : prefixes) {
+            BitSet  found   = new BitSet(partCount);
+            int     first   = lowerBound(prefix);
+            int     last    = lowerBound(prefix + Character.MAX_VALUE);
+
+            for (int posting = starts[first]; posting < starts[last];
+                 posting++)
+                found.set(parts[posting]);
+
+            if (matches == null)
+                matches = found;
+            else
+                matches.and(found);
+        }
+
+        result = new int[matches.cardinality()];
+        for (int part = matches.nextSetBit(0); part >= 0;
+             part = matches.nextSetBit(part + 1))
+            result[index++] = part;
+
+        return result;
+    }
+
+    // Index of the first word that is not less than the key.
+    private int lowerBound(String key) {
+        int     low     = 0;
+        int     high    = words.length;
+
+        while (low < high) {
+            int     middle  = (low + high) >>> 1;
+
+            if (words[middle].compareTo(key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+}
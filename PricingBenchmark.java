@@ -0,0 +1,700 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import javax.swing.*;
+
+/**
+ *  The PricingBenchmark class measures the order pricing and formatting hot
+ *  path.  Each case is warmed up and then timed over several iterations; the
+ *  report gives the mean time and the bytes allocated per operation.
+ *
+ *  Run it with:  java PricingBenchmark [case name filter]
+ */
+
+public class PricingBenchmark {
+    private static final int    WARMUP_ITERATIONS   = 5;
+    private static final int    MEASURE_ITERATIONS  = 10;
+    private static final int    OPS_PER_ITERATION   = 100_000;
+
+    // Used to measure the bytes allocated by the benchmark thread.
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are folded into this so that no case can be optimized away.
+    private static double       sink;
+
+    // Scratch directories made by the cases, deleted when the run ends.
+    private static final ArrayList<Path>    tempDirectories =
+        new ArrayList<Path>();
+
+    /**
+     *  Case interface:
+     *  One operation of a benchmark case.
+     */
+
+    interface Case {
+        double run(int op);
+    }
+
+    private final ArrayList<String> names   = new ArrayList<String>();
+    private final ArrayList<Case>   cases   = new ArrayList<Case>();
+
+    /**
+     *  add method:
+     *  This method registers a benchmark case.
+     */
+
+    void add(String name, Case benchCase) {
+        names.add(name);
+        cases.add(benchCase);
+    }
+
+    /**
+     *  runAll method:
+     *  This method runs every case whose name contains the filter and prints
+     *  a line of results for each.
+     */
+
+    void runAll(String filter) {
+        System.out.printf("%-32s %12s %12s%n", "Benchmark", "ns/op", "B/op");
+
+        for (int index = 0; index < cases.size(); index++) {
+            if (filter != null && !names.get(index).contains(filter))
+                continue;
+
+            Case    benchCase   = cases.get(index);
+            long    threadId    = Thread.currentThread().getId();
+            long    startBytes;
+            long    startTime;
+            long    elapsed;
+            long    allocated;
+            long    ops         = (long) MEASURE_ITERATIONS *
+                                  OPS_PER_ITERATION;
+
+            for (int iter = 0; iter < WARMUP_ITERATIONS; iter++)
+                runIteration(benchCase);
+
+            startBytes = THREADS.getThreadAllocatedBytes(threadId);
+            startTime = System.nanoTime();
+            for (int iter = 0; iter < MEASURE_ITERATIONS; iter++)
+                runIteration(benchCase);
+            elapsed = System.nanoTime() - startTime;
+            allocated = THREADS.getThreadAllocatedBytes(threadId) -
+                        startBytes;
+
+            System.out.printf("%-32s %12.1f %12.1f%n", names.get(index),
+                              (double) elapsed / ops,
+                              (double) allocated / ops);
+        }
+    }
+
+    private static void runIteration(Case benchCase) {
+        double  sum     = 0;
+
+        for (int op = 0; op < OPS_PER_ITERATION; op++)
+            sum += benchCase.run(op);
+
+        sink += sum;
+    }
+
+    /**
+     *  LegacyDebug class:
+     *  A copy of the original Debug class, disabled.  The message is still
+     *  built by the caller before the check, which is the cost measured.
+     */
+
+    private static class LegacyDebug {
+        private boolean enabled;
+
+        void println(String text) {
+            if (enabled)
+                System.out.println("DEBUG: " + text);
+        }
+    }
+
+    /**
+     *  LegacyPanel class:
+     *  A copy of the way the original DeckPanel, TrucksPanel and WheelsPanel
+     *  priced their selection: read the selected value from the JList, then
+     *  scan the part names for it, logging as it goes.
+     */
+
+    private static class LegacyPanel {
+        private final String[]      PART_NAMES;
+        private final double[]      PART_PRICES;
+        private final JList<String> list;
+        private final LegacyDebug   debug   = new LegacyDebug();
+
+        LegacyPanel(String[] names, double[] prices, int selected) {
+            PART_NAMES = names;
+            PART_PRICES = prices;
+            list = new JList<String>(names);
+            list.setSelectedIndex(selected);
+        }
+
+        double getCost() {
+            double  cost            = 0.0;
+
+            if (list.isSelectionEmpty()) {
+                debug.println("part: NONE");
+                list.setSelectedIndex(0);
+            }
+
+            Object  selection       = list.getSelectedValue();
+            String  selectionStr    = selection.toString();
+
+            debug.println("part: " + selection.toString());
+
+            for (int index = 0; index < PART_NAMES.length; index++) {
+                if (PART_NAMES[index] == selectionStr) {
+                    cost = PART_PRICES[index];
+                    debug.println("price: $" + cost);
+                    break;
+                }
+            }
+
+            return cost;
+        }
+
+        // The original AccessoryPanel allowed several selections.
+        double getMultiCost() {
+            double  cost            = 0.0;
+
+            if (list.isSelectionEmpty())
+                debug.println("accessory: NONE");
+
+            java.util.List<String> selections = list.getSelectedValuesList();
+
+            for (Object selection : selections) {
+                double  price           = 0.00;
+                String  selectionStr    = selection.toString();
+
+                debug.println("accessory: " + selectionStr);
+
+                for (int index = 0; index < PART_NAMES.length; index++) {
+                    if (PART_NAMES[index] == selectionStr) {
+                        price = PART_PRICES[index];
+                        debug.println("price: $" + price);
+                        break;
+                    }
+                }
+
+                cost += price;
+            }
+
+            return cost;
+        }
+    }
+
+    /**
+     *  TagElement class:
+     *  A copy of the SkateboardAppComp element registry entry that the
+     *  purchase loop looks up by tag.
+     */
+
+    private static class TagElement {
+        final String    tag;
+        final JList<?>  list;
+        final double[]  prices;
+
+        TagElement(String tag, JList<?> list, double[] prices) {
+            this.tag    = tag;
+            this.list   = list;
+            this.prices = prices;
+        }
+    }
+
+    private static TagElement getByTag(ArrayList<TagElement> elements,
+                                       String tag) {
+        for (TagElement elem : elements) {
+            if (elem.tag.equals(tag))
+                return elem;
+        }
+
+        return null;
+    }
+
+    private static long[] toCents(double[] prices) {
+        long[]  cents   = new long[prices.length];
+
+        for (int index = 0; index < prices.length; index++)
+            cents[index] = Math.round(prices[index] * 100);
+
+        return cents;
+    }
+
+    /**
+     *  createTempDirectory method:
+     *  This method makes a scratch directory for a case, to be deleted with
+     *  everything in it when the run ends.
+     */
+
+    private static Path createTempDirectory(String prefix)
+            throws IOException {
+        Path    directory   = Files.createTempDirectory(prefix);
+
+        tempDirectories.add(directory);
+        return directory;
+    }
+
+    private static void deleteTempDirectories() {
+        for (Path directory : tempDirectories) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder())
+                     .forEach(file -> file.toFile().delete());
+            }
+            catch (IOException ex) {
+                Log.warn("Unable to delete {}: {}", directory,
+                         ex.getMessage());
+            }
+        }
+        tempDirectories.clear();
+    }
+
+    /**
+     *  catalogText method:
+     *  This method writes one category of parts in the catalog file format.
+     */
+
+    private static String catalogText(String key, String[] names,
+                                      double[] prices, boolean multiple) {
+        StringBuilder   text    = new StringBuilder();
+
+        text.append("category|").append(key).append('|').append(key)
+            .append(multiple ? "|multiple\n" : "\n");
+        for (int index = 0; index < names.length; index++) {
+            text.append("part|").append(key).append('-').append(index)
+                .append('|').append(names[index]).append('|')
+                .append(String.format("%.2f", prices[index])).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     *  main method:
+     *  This builds the cases from the shop's parts and runs them.
+     */
+
+    public static void main(String[] args) {
+        final String[]  DECK_NAMES      = {
+            "None", "Master Thrasher", "Dictator", "Street King"
+        };
+        final double[]  DECK_PRICES     = { 0.00, 60.00, 45.00, 50.00 };
+        final String[]  TRUCKS_NAMES    = {
+            "None", "7.75\" axle", "8.00\" axle", "8.50\" axle"
+        };
+        final double[]  TRUCKS_PRICES   = { 0.00, 35.00, 40.00, 45.00 };
+        final String[]  WHEELS_NAMES    = {
+            "None", "51 mm", "55 mm", "58 mm", "61 mm"
+        };
+        final double[]  WHEELS_PRICES   = {
+            0.00, 20.00, 22.00, 24.00, 28.00
+        };
+        final String[]  ACCESSORY_NAMES = {
+            "Grip tape", "Bearings", "Riser pads", "Nuts & bolts kit"
+        };
+        final double[]  ACCESSORY_PRICES = { 10.00, 30.00, 2.00, 3.00 };
+        final double    SALES_TAX_RATE  = 0.06;
+
+        PricingBenchmark    bench       = new PricingBenchmark();
+
+        // The original per-panel pricing.
+        LegacyPanel deck        = new LegacyPanel(DECK_NAMES, DECK_PRICES, 1);
+        LegacyPanel trucks      = new LegacyPanel(TRUCKS_NAMES,
+                                                  TRUCKS_PRICES, 2);
+        LegacyPanel wheels      = new LegacyPanel(WHEELS_NAMES,
+                                                  WHEELS_PRICES, 3);
+        LegacyPanel accessory   = new LegacyPanel(ACCESSORY_NAMES,
+                                                  ACCESSORY_PRICES, 0);
+        accessory.list.setSelectionMode(
+                ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        accessory.list.setSelectedIndices(new int[] { 0, 2 });
+
+        bench.add("legacy.panelCost", op -> {
+            double  subtotal    = deck.getCost() + trucks.getCost() +
+                                  wheels.getCost() +
+                                  accessory.getMultiCost();
+            double  salesTax    = subtotal * SALES_TAX_RATE;
+
+            return subtotal + salesTax;
+        });
+
+        // The SkateboardAppComp purchase loop, which looks each list up by
+        // tag and prints every selection.
+        final String[]          TAG_PREFIXES    = {
+            "Deck", "Trucks", "Wheels", "Accessory"
+        };
+        ArrayList<TagElement>   elements        = new ArrayList<TagElement>();
+        PrintStream             quiet           =
+            new PrintStream(OutputStream.nullOutputStream());
+        elements.add(new TagElement("TitleLabel", null, null));
+        elements.add(new TagElement("DeckList", deck.list, DECK_PRICES));
+        elements.add(new TagElement("TrucksList", trucks.list,
+                                    TRUCKS_PRICES));
+        elements.add(new TagElement("WheelsList", wheels.list,
+                                    WHEELS_PRICES));
+        elements.add(new TagElement("AccessoryList", accessory.list,
+                                    ACCESSORY_PRICES));
+
+        bench.add("legacy.compTagLoop", op -> {
+            PrintStream out         = System.out;
+            double      subtotal    = 0.00;
+
+            System.setOut(quiet);
+            for (String tagPref : TAG_PREFIXES) {
+                String      tag         = tagPref + "List";
+                TagElement  listElem    = getByTag(elements, tag);
+
+                if (listElem != null) {
+                    JList<?>    list    = listElem.list;
+
+                    System.out.println("found tag '" + tag + "'");
+                    for (int index : list.getSelectedIndices()) {
+                        System.out.println(tag + ": selected index: " +
+                                           index);
+                        System.out.println(tag + ": price is $" +
+                                           listElem.prices[index]);
+                        subtotal += listElem.prices[index];
+                    }
+                }
+            }
+            System.setOut(out);
+
+            return subtotal + subtotal * SALES_TAX_RATE;
+        });
+
+        // The same loop over handles resolved once up front, as the
+        // SkateboardAppComp registry now does, without the printing.
+        TagElement[]    handles         = new TagElement[TAG_PREFIXES.length];
+        for (int index = 0; index < TAG_PREFIXES.length; index++)
+            handles[index] = getByTag(elements, TAG_PREFIXES[index] + "List");
+
+        bench.add("comp.handleLoop", op -> {
+            double      subtotal    = 0.00;
+
+            for (TagElement listElem : handles) {
+                for (int index : listElem.list.getSelectedIndices())
+                    subtotal += listElem.prices[index];
+            }
+
+            return subtotal + subtotal * SALES_TAX_RATE;
+        });
+
+        // The data-driven SkateboardAppComp, pricing the choice of each
+        // category by index.
+        Catalog         shopCatalog;
+        CatalogPricer   catalogPricer;
+        int[]           choices         = new int[4];
+        Quote           choiceQuote     = new Quote();
+        try {
+            Catalog catalog = Catalog.parse(new BufferedReader(new StringReader(
+                    catalogText("Deck", DECK_NAMES, DECK_PRICES, false) +
+                    catalogText("Trucks", TRUCKS_NAMES, TRUCKS_PRICES, false) +
+                    catalogText("Wheels", WHEELS_NAMES, WHEELS_PRICES, false) +
+                    catalogText("Accessory", ACCESSORY_NAMES,
+                                ACCESSORY_PRICES, true))), "benchmark");
+            TaxEngine.Table taxes   = TaxEngine.parse(new BufferedReader(
+                    new StringReader("jurisdiction|PA|0.06\n")), "benchmark")
+                    .compile(catalog);
+
+            shopCatalog = catalog;
+            catalogPricer = new CatalogPricer(catalog, taxes, 0);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        bench.add("comp.catalogPricer", op -> {
+            choices[0] = op & 3;
+            choices[1] = (op >> 2) & 3;
+            choices[2] = op % 5;
+            choices[3] = op & 15;
+            return catalogPricer.price(choices, choiceQuote).getTotalCents();
+        });
+
+        // Finding a deck by SKU and reading its price, in the parsed catalog
+        // and in the same catalog mapped from its binary form.
+        Catalog.Category    textDecks   = shopCatalog.getCategory("Deck");
+        Catalog.Category    mappedDecks;
+        String[]            deckSkus    = new String[DECK_NAMES.length];
+        try {
+            String  binary  = createTempDirectory("catalog-bench")
+                              .resolve("catalog" + BinaryCatalog.EXTENSION)
+                              .toString();
+
+            BinaryCatalog.write(shopCatalog, binary);
+            mappedDecks = Catalog.load(binary).getCategory("Deck");
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        for (int index = 0; index < deckSkus.length; index++)
+            deckSkus[index] = textDecks.getSku(index);
+
+        bench.add("catalog.textLookup", op ->
+            textDecks.getPriceCents(textDecks.indexOfSku(deckSkus[op & 3])));
+
+        bench.add("catalog.mappedLookup", op ->
+            mappedDecks.getPriceCents(
+                    mappedDecks.indexOfSku(deckSkus[op & 3])));
+
+        // Reading the accessory selection as a bit mask, from an array of
+        // the selected indices and from the selection model in place.
+        JList<String>   accessoryList   = accessory.list;
+
+        bench.add("accessory.indicesMask", op -> {
+            int     mask    = 0;
+
+            for (int index : accessoryList.getSelectedIndices())
+                mask |= 1 << index;
+
+            return mask;
+        });
+
+        bench.add("accessory.modelMask", op -> {
+            ListSelectionModel  selection   =
+                accessoryList.getSelectionModel();
+            int                 mask        = 0;
+
+            for (int index = selection.getMinSelectionIndex();
+                 index <= selection.getMaxSelectionIndex() && index >= 0;
+                 index++) {
+                if (selection.isSelectedIndex(index))
+                    mask |= 1 << index;
+            }
+
+            return mask;
+        });
+
+        // The headless pricing engine.
+        PricingEngine   engine  = new PricingEngine(toCents(DECK_PRICES),
+                                                    toCents(TRUCKS_PRICES),
+                                                    toCents(WHEELS_PRICES),
+                                                    toCents(ACCESSORY_PRICES),
+                                                    60_000);
+        Quote           quote   = new Quote();
+
+        bench.add("engine.price", op ->
+            engine.price(op & 3, (op >> 2) & 3, op % 5, op & 15, quote)
+                  .getTotalCents());
+
+        // A catalog too big for a full quote table, priced from the
+        // partial tables.
+        Random              random      = new Random(42);
+        PricingEngine       bigEngine   = new PricingEngine(
+                random.longs(100, 0, 10_000).toArray(),
+                random.longs(50, 0, 10_000).toArray(),
+                random.longs(40, 0, 10_000).toArray(),
+                random.longs(12, 0, 10_000).toArray(), 60_000);
+
+        bench.add("engine.partialTable", op ->
+            bigEngine.price(op % 100, op % 50, op % 40, op & 0xFFF, quote)
+                     .getTotalCents());
+
+        // As many accessories as a mask can hold, priced from the tables of
+        // each group of eight.
+        PricingEngine       wideEngine  = new PricingEngine(
+                random.longs(100, 0, 10_000).toArray(),
+                random.longs(50, 0, 10_000).toArray(),
+                random.longs(40, 0, 10_000).toArray(),
+                random.longs(PricingEngine.MAX_ACCESSORIES, 0, 10_000)
+                      .toArray(), 60_000);
+
+        bench.add("engine.manyAccessories", op ->
+            wideEngine.price(op % 100, op % 50, op % 40,
+                             (op * 0x9E3779B9) >>> 1, quote)
+                      .getTotalCents());
+
+        // Orders shipped to several jurisdictions, each with its own rate
+        // per category, priced by one engine per jurisdiction.
+        long[][]        rates   = { { 60_000, 60_000, 60_000, 60_000 },
+                                    { 66_250, 66_250, 66_250, 66_250 },
+                                    { 40_000, 40_000, 40_000, 0 },
+                                    { 0, 0, 0, 0 } };
+        PricingEngine[] engines = new PricingEngine[rates.length];
+
+        for (int index = 0; index < engines.length; index++)
+            engines[index] = new PricingEngine(toCents(DECK_PRICES),
+                                               toCents(TRUCKS_PRICES),
+                                               toCents(WHEELS_PRICES),
+                                               toCents(ACCESSORY_PRICES),
+                                               rates[index][0],
+                                               rates[index][1],
+                                               rates[index][2],
+                                               rates[index][3]);
+
+        bench.add("engine.jurisdictions", op ->
+            engines[(op >> 4) & 3].price(op & 3, (op >> 2) & 3, op % 5,
+                                         op & 15, quote)
+                                  .getTotalCents());
+
+        // Journaling a completed purchase.
+        OrderRecord     journalOrder    = new OrderRecord();
+        Quote           journalQuote    = new Quote();
+        OrderJournal    journal;
+        try {
+            journal = new OrderJournal(
+                    createTempDirectory("journal-bench").toString());
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        journalQuote.set(13600, 816, 14416);
+        bench.add("journal.append", op -> {
+            journalOrder.set(1_760_000_000_000L + op * 1000L, op & 3,
+                             (op >> 2) & 3, op % 5, op & 15, journalQuote);
+            try {
+                return journal.append(0, journalOrder);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        // Encoding and decoding a purchase as an order record, a minute
+        // after the one before it, and the same order as a JSON object in
+        // UTF-8.
+        OrderRecord     record          = new OrderRecord();
+        OrderRecord     decoded         = new OrderRecord();
+        ByteBuffer      recordBuffer    =
+            ByteBuffer.allocate(OrderCodec.MAX_RECORD_SIZE);
+        Quote           recordQuote     = new Quote();
+        StringBuilder   json            = new StringBuilder();
+        long[]          jsonFields      = new long[8];
+
+        bench.add("codec.record", op -> {
+            long    timestamp   = 1_760_000_000_000L + op * 60_000L;
+
+            recordQuote.set(13600 + op, 816, 14416 + op);
+            record.set(timestamp, op & 3, (op >> 2) & 3, op % 5, op & 15,
+                       recordQuote);
+            recordBuffer.clear();
+            OrderCodec.encode(record, timestamp - 60_000, recordBuffer);
+            recordBuffer.flip();
+            try {
+                OrderCodec.decode(recordBuffer, timestamp - 60_000, decoded);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return decoded.getTotalCents() + recordBuffer.limit();
+        });
+
+        bench.add("codec.json", op -> {
+            json.setLength(0);
+            json.append("{\"timestamp\":")
+                .append(1_760_000_000_000L + op * 60_000L)
+                .append(",\"deck\":").append(op & 3)
+                .append(",\"trucks\":").append((op >> 2) & 3)
+                .append(",\"wheels\":").append(op % 5)
+                .append(",\"accessories\":").append(op & 15)
+                .append(",\"subtotal\":").append(13600 + op)
+                .append(",\"salesTax\":").append(816)
+                .append(",\"total\":").append(14416 + op).append('}');
+            byte[]  bytes   = json.toString().getBytes(StandardCharsets.UTF_8);
+            String  text    = new String(bytes, StandardCharsets.UTF_8);
+            int     colon   = 0;
+
+            for (int field = 0; field < jsonFields.length; field++) {
+                int     end;
+
+                colon = text.indexOf(':', colon + 1);
+                end = text.indexOf(',', colon);
+                if (end < 0)
+                    end = text.length() - 1;
+                jsonFields[field] = Long.parseLong(text.substring(colon + 1,
+                                                                  end));
+            }
+            return jsonFields[7] + bytes.length;
+        });
+
+        // A disabled debug message through the logger.
+        Log.setLevel(Log.Level.INFO);
+        bench.add("log.debugDisabled", op -> {
+            Log.debug("deck: {}", DECK_NAMES[op & 3]);
+            Log.debug(() -> "price: $" + DECK_PRICES[op & 3]);
+            return op;
+        });
+
+        // The CostDialog formatting of the three amounts.
+        bench.add("costDialog.decimalFormat", op -> {
+            DecimalFormat   dollar      = new DecimalFormat("0.00");
+            double          subtotal    = 60.00 + op % 100;
+            String          subtotalStr = "$" + dollar.format(subtotal);
+            String          salesTaxStr = "$" + dollar.format(subtotal * 0.06);
+            String          totalStr    = "$" + dollar.format(subtotal * 1.06);
+
+            return subtotalStr.length() + salesTaxStr.length() +
+                   totalStr.length();
+        });
+
+        char[]  currencyBuffer  = new char[64];
+        byte[]  exportBuffer    = new byte[64];
+
+        bench.add("currency.chars", op -> {
+            long    subtotal    = 6000 + op % 10_000;
+            int     end;
+
+            end = CurrencyFormatter.DOLLARS.format(subtotal, currencyBuffer,
+                                                   0);
+            end = CurrencyFormatter.DOLLARS.format(
+                    Money.applyRate(subtotal, 60_000), currencyBuffer, end);
+            return CurrencyFormatter.DOLLARS.format(subtotal * 106 / 100,
+                                                    currencyBuffer, end);
+        });
+
+        bench.add("currency.exportBytes", op -> {
+            long    subtotal    = 6000 + op % 10_000;
+            int     end;
+
+            end = CurrencyFormatter.PLAIN.format(subtotal, exportBuffer, 0);
+            exportBuffer[end++] = ',';
+            end = CurrencyFormatter.PLAIN.format(
+                    Money.applyRate(subtotal, 60_000), exportBuffer, end);
+            exportBuffer[end++] = ',';
+            return CurrencyFormatter.PLAIN.format(subtotal * 106 / 100,
+                                                  exportBuffer, end);
+        });
+
+        bench.add("currency.labels", op -> {
+            long    subtotal    = 6000 + op % 10_000;
+
+            return CurrencyFormatter.DOLLARS.format(subtotal).length() +
+                   CurrencyFormatter.DOLLARS.format(
+                        Money.applyRate(subtotal, 60_000)).length() +
+                   CurrencyFormatter.DOLLARS.format(
+                        subtotal * 106 / 100).length();
+        });
+
+        try {
+            bench.runAll(args.length > 0 ? args[0] : null);
+        }
+        finally {
+            try {
+                journal.close();
+            }
+            catch (IOException ex) {
+                Log.error("Unable to close the benchmark journal", ex);
+            }
+            deleteTempDirectories();
+        }
+
+        if (sink == 42)
+            System.out.println();
+    }
+}
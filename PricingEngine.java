@@ -0,0 +1,174 @@
+import java.util.Objects;
+
+/**
+ *  PricingEngine class:
+ *  This class prices an order from the index of the part selected in each
+ *  category and a bit mask of the selected accessories.  It has no Swing
+ *  dependency, so the GUI is just one of its callers, and pricing an order
+ *  does not allocate any objects.  Quotes come from a QuoteTable built when
+ *  the engine is created, so a new catalog means a new engine and table.
+ */
+
+public class PricingEngine {
+    // The accessory selection is an int bit mask, one bit per accessory.
+    public static final int MAX_ACCESSORIES = 31;
+
+    // Prices of the parts in each category in cents, indexed by part.
+    private final long[]    deckPrices;
+    private final long[]    trucksPrices;
+    private final long[]    wheelsPrices;
+    private final long[]    accessoryPrices;
+
+    // Sales tax rate of each category, in millionths.
+    private final long      deckTaxRate;
+    private final long      trucksTaxRate;
+    private final long      wheelsTaxRate;
+    private final long      accessoryTaxRate;
+
+    // Precomputed quotes for these prices.
+    private final QuoteTable    quoteTable;
+
+    /**
+     *  PricingEngine constructor:
+     *  Prices are in cents and the sales tax rate in millionths (see
+     *  Money).  The price arrays are copied so that the engine can not be
+     *  changed behind its back.
+     */
+
+    public PricingEngine(long[] deckPrices, long[] trucksPrices,
+                         long[] wheelsPrices, long[] accessoryPrices,
+                         long salesTaxRate) {
+        this(deckPrices, trucksPrices, wheelsPrices, accessoryPrices,
+             salesTaxRate, salesTaxRate, salesTaxRate, salesTaxRate);
+    }
+
+    /**
+     *  PricingEngine constructor:
+     *  This constructor takes a separate sales tax rate, in millionths, for
+     *  each category.
+     */
+
+    public PricingEngine(long[] deckPrices, long[] trucksPrices,
+                         long[] wheelsPrices, long[] accessoryPrices,
+                         long deckTaxRate, long trucksTaxRate,
+                         long wheelsTaxRate, long accessoryTaxRate) {
+        if (deckPrices.length == 0 || trucksPrices.length == 0 ||
+            wheelsPrices.length == 0)
+            throw new IllegalArgumentException("Every single-choice " +
+                                               "category needs a part");
+        if (accessoryPrices.length > MAX_ACCESSORIES)
+            throw new IllegalArgumentException("Too many accessories: " +
+                                               accessoryPrices.length);
+
+        this.deckPrices         = deckPrices.clone();
+        this.trucksPrices       = trucksPrices.clone();
+        this.wheelsPrices       = wheelsPrices.clone();
+        this.accessoryPrices    = accessoryPrices.clone();
+        this.deckTaxRate        = deckTaxRate;
+        this.trucksTaxRate      = trucksTaxRate;
+        this.wheelsTaxRate      = wheelsTaxRate;
+        this.accessoryTaxRate   = accessoryTaxRate;
+
+        quoteTable = new QuoteTable(this.deckPrices, this.trucksPrices,
+                                    this.wheelsPrices, this.accessoryPrices,
+                                    deckTaxRate, trucksTaxRate, wheelsTaxRate,
+                                    accessoryTaxRate);
+    }
+
+    /**
+     *  PricingEngine constructor:
+     *  This constructor takes the prices from the Deck, Trucks, Wheels and
+     *  Accessory categories of a catalog.
+     */
+
+    public PricingEngine(Catalog catalog, long salesTaxRate) {
+        this(catalog.getCategory("Deck").getPriceCents(),
+             catalog.getCategory("Trucks").getPriceCents(),
+             catalog.getCategory("Wheels").getPriceCents(),
+             catalog.getCategory("Accessory").getPriceCents(), salesTaxRate);
+    }
+
+    /**
+     *  PricingEngine constructor:
+     *  This constructor takes the prices from a catalog and the sales tax
+     *  rates from a tax table compiled for it, in one jurisdiction.
+     */
+
+    public PricingEngine(Catalog catalog, TaxEngine.Table taxes,
+                         int jurisdiction) {
+        this(catalog.getCategory("Deck").getPriceCents(),
+             catalog.getCategory("Trucks").getPriceCents(),
+             catalog.getCategory("Wheels").getPriceCents(),
+             catalog.getCategory("Accessory").getPriceCents(),
+             taxes.getRate(jurisdiction, catalog.indexOfCategory("Deck")),
+             taxes.getRate(jurisdiction, catalog.indexOfCategory("Trucks")),
+             taxes.getRate(jurisdiction, catalog.indexOfCategory("Wheels")),
+             taxes.getRate(jurisdiction,
+                           catalog.indexOfCategory("Accessory")));
+    }
+
+    /**
+     *  price method:
+     *  This method prices one order and stores the result in the quote that
+     *  is passed in, which is also returned.  Bit n of accessoryMask is set
+     *  when accessory n is selected.
+     */
+
+    public Quote price(int deck, int trucks, int wheels, int accessoryMask,
+                       Quote quote) {
+        // The table would quietly answer for an out-of-range part, so check
+        // each index against its own category.
+        Objects.checkIndex(deck, deckPrices.length);
+        Objects.checkIndex(trucks, trucksPrices.length);
+        Objects.checkIndex(wheels, wheelsPrices.length);
+        if (accessoryMask >>> accessoryPrices.length != 0)
+            throw new IndexOutOfBoundsException("Accessory mask " +
+                                                accessoryMask +
+                                                " is out of range");
+
+        quoteTable.price(deck, trucks, wheels, accessoryMask, quote);
+        return quote;
+    }
+
+    /**
+     *  getQuoteTable method:
+     *  This method returns the table of precomputed quotes built for these
+     *  prices.
+     */
+
+    public QuoteTable getQuoteTable() {
+        return quoteTable;
+    }
+
+    public int getDeckCount() {
+        return deckPrices.length;
+    }
+
+    public int getTrucksCount() {
+        return trucksPrices.length;
+    }
+
+    public int getWheelsCount() {
+        return wheelsPrices.length;
+    }
+
+    public int getAccessoryCount() {
+        return accessoryPrices.length;
+    }
+
+    public long getDeckTaxRate() {
+        return deckTaxRate;
+    }
+
+    public long getTrucksTaxRate() {
+        return trucksTaxRate;
+    }
+
+    public long getWheelsTaxRate() {
+        return wheelsTaxRate;
+    }
+
+    public long getAccessoryTaxRate() {
+        return accessoryTaxRate;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ *  Quote class:
+ *  This class holds the subtotal, sales tax, and total of a priced order, in
+ *  cents, and for a purchase that could not be filled, the part that is out
+ *  of stock.  A quote is mutable so that a caller pricing many orders can
+ *  reuse one instance instead of allocating a new result for every order.
+ */
+
+public class Quote {
+    private long    subtotal;       // Cost of the parts
+    private long    salesTax;       // Sales tax on the subtotal
+    private long    total;          // Subtotal plus sales tax
+    private String  unavailable;    // SKU that is out of stock, or null
+
+    /**
+     *  set method:
+     *  This method stores the results of pricing an order.
+     */
+
+    void set(long subtotal, long salesTax, long total) {
+        this.subtotal   = subtotal;
+        this.salesTax   = salesTax;
+        this.total      = total;
+        unavailable     = null;
+    }
+
+    /**
+     *  setUnavailable method:
+     *  This method records that the order could not be filled because the
+     *  part with this SKU is out of stock.
+     */
+
+    void setUnavailable(String sku) {
+        unavailable = sku;
+    }
+
+    public long getSubtotalCents() {
+        return subtotal;
+    }
+
+    public long getSalesTaxCents() {
+        return salesTax;
+    }
+
+    public long getTotalCents() {
+        return total;
+    }
+
+    public String getUnavailableSku() {
+        return unavailable;
+    }
+}
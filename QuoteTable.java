@@ -0,0 +1,253 @@
+/**
+ *  QuoteTable class:
+ *  This class precomputes quotes so that pricing an order is a table
+ *  lookup.  When the whole configuration space (every deck, trucks, wheels
+ *  and accessory subset) is small enough, the subtotal, sales tax and total
+ *  of every configuration are stored in one array and a quote is a single
+ *  index.  When it is too big, the table falls back to partial tables: the
+ *  subtotal of every deck, trucks and wheels combination, and the price of
+ *  every accessory subset, each kept only if it fits.  Whatever is not
+ *  tabled is summed from the part prices.
+ *
+ *  With too many accessories for one subset table, the accessories are
+ *  split into groups of eight, each with a table of its 256 subsets, so the
+ *  price of any selection is still at most four lookups rather than a walk
+ *  over its bits.
+ *
+ *  Each category has its own sales tax rate, so that a jurisdiction can tax
+ *  or exempt categories separately.  The tax of each part is kept in
+ *  millionths of a cent and the order's tax is rounded once, which gives
+ *  the same result as taxing the subtotal when the rates are all the same.
+ *
+ *  A table is immutable and built for one set of prices; a new catalog gets
+ *  a new table.
+ */
+
+public class QuoteTable {
+    // Largest tables to build, in entries.
+    private static final int    FULL_TABLE_LIMIT    = 1 << 16;
+    private static final int    BASE_TABLE_LIMIT    = 1 << 18;
+    private static final int    SUBSET_TABLE_BITS   = 16;
+    private static final int    GROUP_BITS          = 8;
+
+    private final long[]    deckPrices;
+    private final long[]    trucksPrices;
+    private final long[]    wheelsPrices;
+    private final long[]    accessoryPrices;
+
+    // Sales tax rate of each category, in millionths.
+    private final long      deckTaxRate;
+    private final long      trucksTaxRate;
+    private final long      wheelsTaxRate;
+    private final long      accessoryTaxRate;
+
+    private final int       trucksCount;
+    private final int       wheelsCount;
+    private final int       accessoryBits;
+
+    // Subtotal, sales tax and total of every configuration, or null.
+    private final long[]    fullTable;
+    // Subtotal and sales tax in millionths of every deck, trucks and wheels
+    // combination, or null.
+    private final long[]    baseTable;
+    // Price of every accessory subset, indexed by mask, or null.
+    private final long[]    subsetTable;
+    // Price of every subset of each group of accessories, when there is no
+    // subset table.
+    private final long[][]  groupTables;
+
+    /**
+     *  QuoteTable constructor:
+     *  Prices are in cents and the sales tax rates, one per category, in
+     *  millionths.  The arrays are not copied; the caller must not change
+     *  them.
+     */
+
+    QuoteTable(long[] deckPrices, long[] trucksPrices, long[] wheelsPrices,
+               long[] accessoryPrices, long deckTaxRate, long trucksTaxRate,
+               long wheelsTaxRate, long accessoryTaxRate) {
+        long    baseCount;
+
+        this.deckPrices         = deckPrices;
+        this.trucksPrices       = trucksPrices;
+        this.wheelsPrices       = wheelsPrices;
+        this.accessoryPrices    = accessoryPrices;
+        this.deckTaxRate        = deckTaxRate;
+        this.trucksTaxRate      = trucksTaxRate;
+        this.wheelsTaxRate      = wheelsTaxRate;
+        this.accessoryTaxRate   = accessoryTaxRate;
+
+        trucksCount = trucksPrices.length;
+        wheelsCount = wheelsPrices.length;
+        accessoryBits = accessoryPrices.length;
+
+        baseCount = (long) deckPrices.length * trucksCount * wheelsCount;
+
+        subsetTable = accessoryBits <= SUBSET_TABLE_BITS
+                      ? buildSubsetTable(accessoryPrices, 0, accessoryBits)
+                      : null;
+        groupTables = subsetTable == null ? buildGroupTables(accessoryPrices)
+                                          : null;
+        baseTable = baseCount <= BASE_TABLE_LIMIT
+                    ? buildBaseTable((int) baseCount) : null;
+        fullTable = subsetTable != null && baseTable != null &&
+                    baseCount << accessoryBits <= FULL_TABLE_LIMIT
+                    ? buildFullTable((int) baseCount << accessoryBits) : null;
+    }
+
+    /**
+     *  isFull method:
+     *  This method returns true if every configuration is tabled.
+     */
+
+    public boolean isFull() {
+        return fullTable != null;
+    }
+
+    /**
+     *  price method:
+     *  This method stores the quote for one configuration in the quote that
+     *  is passed in.  The indices must already have been checked.
+     */
+
+    void price(int deck, int trucks, int wheels, int accessoryMask,
+               Quote quote) {
+        int     base    = (deck * trucksCount + trucks) * wheelsCount + wheels;
+        long    subtotal;
+        long    taxMillionths;
+        long    accessories;
+
+        if (fullTable != null) {
+            int     index   = ((base << accessoryBits) | accessoryMask) * 3;
+
+            quote.set(fullTable[index], fullTable[index + 1],
+                      fullTable[index + 2]);
+            return;
+        }
+
+        if (baseTable != null) {
+            subtotal = baseTable[base * 2];
+            taxMillionths = baseTable[base * 2 + 1];
+        }
+        else {
+            subtotal = deckPrices[deck] + trucksPrices[trucks] +
+                       wheelsPrices[wheels];
+            taxMillionths = baseTax(deckPrices[deck], trucksPrices[trucks],
+                                    wheelsPrices[wheels]);
+        }
+
+        accessories = subsetTable != null
+                      ? subsetTable[accessoryMask]
+                      : sumGroups(groupTables, accessoryMask);
+        subtotal += accessories;
+        taxMillionths += Math.multiplyExact(accessories, accessoryTaxRate);
+
+        long    salesTax    = Money.roundMillionths(taxMillionths);
+        quote.set(subtotal, salesTax, subtotal + salesTax);
+    }
+
+    /**
+     *  baseTax method:
+     *  This method returns the sales tax, in millionths of a cent, of a
+     *  deck, trucks and wheels.
+     */
+
+    private long baseTax(long deck, long trucks, long wheels) {
+        return Math.addExact(Math.addExact(
+                   Math.multiplyExact(deck, deckTaxRate),
+                   Math.multiplyExact(trucks, trucksTaxRate)),
+                   Math.multiplyExact(wheels, wheelsTaxRate));
+    }
+
+    /**
+     *  buildSubsetTable method:
+     *  This method prices every subset of the given run of parts, indexed
+     *  by the subset's mask shifted down to bit 0.
+     */
+
+    static long[] buildSubsetTable(long[] prices, int first, int bits) {
+        long[]  table   = new long[1 << bits];
+
+        // Each subset is a smaller subset plus its lowest part.
+        for (int mask = 1; mask < table.length; mask++) {
+            table[mask] = table[mask & (mask - 1)] +
+                          prices[first + Integer.numberOfTrailingZeros(mask)];
+        }
+
+        return table;
+    }
+
+    /**
+     *  buildGroupTables method:
+     *  This method builds a subset table for each group of eight parts, for
+     *  when one table of every subset would be too big.
+     */
+
+    static long[][] buildGroupTables(long[] prices) {
+        long[][]    tables  =
+            new long[(prices.length + GROUP_BITS - 1) / GROUP_BITS][];
+
+        for (int group = 0; group < tables.length; group++) {
+            int     first   = group * GROUP_BITS;
+
+            tables[group] = buildSubsetTable(
+                    prices, first, Math.min(GROUP_BITS, prices.length - first));
+        }
+
+        return tables;
+    }
+
+    /**
+     *  sumGroups method:
+     *  This method adds up the parts selected by a mask from the group
+     *  tables, one lookup per group.
+     */
+
+    static long sumGroups(long[][] groupTables, int mask) {
+        long    sum     = 0;
+
+        for (long[] table : groupTables) {
+            sum += table[mask & ((1 << GROUP_BITS) - 1)];
+            mask >>>= GROUP_BITS;
+        }
+
+        return sum;
+    }
+
+    private long[] buildBaseTable(int count) {
+        long[]  table   = new long[count * 2];
+        int     index   = 0;
+
+        for (long deck : deckPrices) {
+            for (long trucks : trucksPrices) {
+                for (long wheels : wheelsPrices) {
+                    table[index++] = deck + trucks + wheels;
+                    table[index++] = baseTax(deck, trucks, wheels);
+                }
+            }
+        }
+
+        return table;
+    }
+
+    private long[] buildFullTable(int count) {
+        long[]  table   = new long[count * 3];
+        int     subsets = subsetTable.length;
+
+        for (int config = 0; config < count; config++) {
+            int     base        = config / subsets;
+            long    accessories = subsetTable[config % subsets];
+            long    subtotal    = baseTable[base * 2] + accessories;
+            long    salesTax    = Money.roundMillionths(
+                                      baseTable[base * 2 + 1] +
+                                      Math.multiplyExact(accessories,
+                                                         accessoryTaxRate));
+
+            table[config * 3]       = subtotal;
+            table[config * 3 + 1]   = salesTax;
+            table[config * 3 + 2]   = subtotal + salesTax;
+        }
+
+        return table;
+    }
+}
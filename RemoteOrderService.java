@@ -0,0 +1,268 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ *  The RemoteOrderService class sends orders to an OrderServer over one
+ *  connection.  See OrderServer for the protocol.  Requests from several
+ *  threads take turns on the connection.  A broken connection is opened
+ *  again on the next request; a purchase that fails with an IOException is
+ *  not retried, since it may have been recorded.
+ *
+ *  Every call blocks on the network, so none may be made on the event
+ *  dispatch thread.  A server that stops answering fails the request after
+ *  the read timeout, 10 seconds unless skateshop.server.timeoutMs is set.
+ */
+
+public class RemoteOrderService implements OrderService {
+    private static final int        TIMEOUT_MILLIS  =
+        Integer.getInteger("skateshop.server.timeoutMs", 10_000);
+
+    private final String            host;
+    private final int               port;
+
+    private Socket                  socket;
+    private BufferedReader          in;
+    private BufferedWriter          out;
+
+    private volatile CatalogView    catalog;
+    private final CopyOnWriteArrayList<Consumer<CatalogView>> listeners =
+        new CopyOnWriteArrayList<Consumer<CatalogView>>();
+
+    /**
+     *  RemoteOrderService constructor:
+     *  This connects to the server and fetches its catalog.
+     */
+
+    public RemoteOrderService(String host, int port) throws IOException {
+        this.host   = host;
+        this.port   = port;
+
+        catalog = fetchCatalog();
+    }
+
+    /**
+     *  connect method:
+     *  This method connects to a server given as host:port.
+     */
+
+    public static RemoteOrderService connect(String address)
+            throws IOException {
+        int     colon   = address.lastIndexOf(':');
+
+        if (colon < 0)
+            return new RemoteOrderService(address, OrderServer.DEFAULT_PORT);
+
+        try {
+            return new RemoteOrderService(
+                    address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1)));
+        }
+        catch (NumberFormatException ex) {
+            throw new IOException("Bad order server address " + address);
+        }
+    }
+
+    /**
+     *  RemoteCatalog class:
+     *  A version of the catalog received from the server.
+     */
+
+    private static final class RemoteCatalog implements CatalogView {
+        private final long      version;
+        private final Catalog   catalog;
+
+        RemoteCatalog(long version, Catalog catalog) {
+            this.version    = version;
+            this.catalog    = catalog;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Catalog getCatalog() {
+            return catalog;
+        }
+    }
+
+    public CatalogView getCatalog() {
+        return catalog;
+    }
+
+    public void addCatalogListener(Consumer<CatalogView> listener) {
+        listeners.add(listener);
+    }
+
+    public Status quote(long catalogVersion, int deck, int trucks,
+                        int wheels, int accessoryMask, Quote quote)
+            throws IOException {
+        return order("QUOTE", catalogVersion, deck, trucks, wheels,
+                     accessoryMask, quote);
+    }
+
+    public Status purchase(long catalogVersion, int deck, int trucks,
+                           int wheels, int accessoryMask, Quote quote)
+            throws IOException {
+        return order("PURCHASE", catalogVersion, deck, trucks, wheels,
+                     accessoryMask, quote);
+    }
+
+    private Status order(String request, long catalogVersion, int deck,
+                         int trucks, int wheels, int accessoryMask,
+                         Quote quote) throws IOException {
+        String      reply;
+        String[]    fields;
+        CatalogView next;
+
+        synchronized (this) {
+            reply = exchange(request + ' ' + catalogVersion + ' ' + deck +
+                             ' ' + trucks + ' ' + wheels + ' ' +
+                             accessoryMask);
+            fields = reply.split(" ");
+
+            if (fields[0].equals("OK") && fields.length == 4) {
+                quote.set(Long.parseLong(fields[1]),
+                          Long.parseLong(fields[2]),
+                          Long.parseLong(fields[3]));
+                return Status.OK;
+            }
+            if (fields[0].equals("REJECTED")) {
+                quote.set(0, 0, 0);
+                return Status.REJECTED;
+            }
+            if (fields[0].equals("OUT_OF_STOCK") && fields.length == 2) {
+                quote.setUnavailable(fields[1]);
+                return Status.OUT_OF_STOCK;
+            }
+            if (fields[0].equals("ERROR"))
+                throw new IOException("Order server: " +
+                                      reply.substring(5).trim());
+            if (!fields[0].equals("STALE"))
+                throw new IOException("Unexpected reply from the order " +
+                                      "server: " + reply);
+        }
+
+        next = fetchCatalog();
+        synchronized (this) {
+            // Another thread may have fetched a newer one meanwhile.
+            if (next.getVersion() <= catalog.getVersion())
+                return Status.STALE;
+            catalog = next;
+        }
+
+        // Tell the listeners outside the lock.
+        for (Consumer<CatalogView> listener : listeners)
+            listener.accept(next);
+        return Status.STALE;
+    }
+
+    /**
+     *  fetchCatalog method:
+     *  This method asks the server for its current catalog.  Only the
+     *  download holds the lock; the catalog is parsed after it is let go.
+     */
+
+    private CatalogView fetchCatalog() throws IOException {
+        String[]        header;
+        StringBuilder   text    = new StringBuilder(1024);
+        int             lines;
+
+        synchronized (this) {
+            header = exchange("CATALOG").split(" ");
+            if (header.length != 3 || !header[0].equals("OK"))
+                throw new IOException("Unexpected catalog reply from the " +
+                                      "order server: " +
+                                      String.join(" ", header));
+
+            lines = Integer.parseInt(header[2]);
+            for (int line = 0; line < lines; line++)
+                text.append(readLine()).append('\n');
+        }
+
+        return new RemoteCatalog(Long.parseLong(header[1]),
+                                 Catalog.parse(new BufferedReader(
+                                        new StringReader(text.toString())),
+                                               host + ":" + port));
+    }
+
+    /**
+     *  exchange method:
+     *  This method sends one request and reads the first line of its
+     *  reply, connecting first if need be.  The caller must hold the lock.
+     */
+
+    private String exchange(String request) throws IOException {
+        if (socket == null) {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port),
+                               TIMEOUT_MILLIS);
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+            }
+            catch (IOException ex) {
+                disconnect();
+                throw ex;
+            }
+            in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        try {
+            out.write(request);
+            out.write('\n');
+            out.flush();
+        }
+        catch (IOException ex) {
+            disconnect();
+            throw ex;
+        }
+
+        return readLine();
+    }
+
+    private String readLine() throws IOException {
+        String  line;
+
+        try {
+            line = in.readLine();
+        }
+        catch (IOException ex) {
+            disconnect();
+            throw ex;
+        }
+
+        if (line == null) {
+            disconnect();
+            throw new EOFException("The order server closed the connection");
+        }
+        return line;
+    }
+
+    private void disconnect() {
+        try {
+            if (socket != null)
+                socket.close();
+        }
+        catch (IOException ex) {
+            // Already broken.
+        }
+        socket = null;
+    }
+
+    public synchronized void close() {
+        disconnect();
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  The SalesAggregator class totals the units sold and the cents taken for
+ *  each part, by SKU, over a sales period such as a business day.
+ *
+ *  Each period's totals are LongAdders, so any number of registers can
+ *  record sales at once without contending on a shared total.  Closing a
+ *  period swaps in a fresh set of totals for new sales, waits for the sales
+ *  already being recorded into the old set to finish, and then reads it.
+ *  The result is consistent (every sale is wholly in one period, and a
+ *  period's totals add up) and writers never wait for it.
+ */
+
+public class SalesAggregator {
+    private volatile Period current = new Period(System.currentTimeMillis());
+
+    /**
+     *  Period class:
+     *  The running totals of one period.
+     */
+
+    private static final class Period {
+        final long                                  startMillis;
+        final ConcurrentHashMap<String, PartTotals> parts   =
+            new ConcurrentHashMap<String, PartTotals>();
+        final LongAdder                             orders  = new LongAdder();
+
+        // Writers in this period, counted in and out.
+        final LongAdder         entered = new LongAdder();
+        final LongAdder         exited  = new LongAdder();
+        volatile boolean        closed;
+
+        Period(long startMillis) {
+            this.startMillis = startMillis;
+        }
+
+        boolean isDrained() {
+            // Read exits first: entries can only have grown since.
+            long    out     = exited.sum();
+
+            return entered.sum() == out;
+        }
+    }
+
+    /**
+     *  PartTotals class:
+     *  The units and cents of one part in one period.
+     */
+
+    private static final class PartTotals {
+        final LongAdder     units   = new LongAdder();
+        final LongAdder     cents   = new LongAdder();
+    }
+
+    /**
+     *  record method:
+     *  This method adds one purchase, given as indices into the catalog it
+     *  was priced from.  Each part counts at its catalog price.
+     */
+
+    public void record(Catalog catalog, int deck, int trucks, int wheels,
+                       int accessoryMask) {
+        Period  period  = enter();
+
+        try {
+            period.orders.increment();
+            add(period, catalog.getCategory("Deck"), deck);
+            add(period, catalog.getCategory("Trucks"), trucks);
+            add(period, catalog.getCategory("Wheels"), wheels);
+
+            Catalog.Category    accessories = catalog.getCategory("Accessory");
+            int                 mask        = accessoryMask;
+
+            while (mask != 0) {
+                add(period, accessories, Integer.numberOfTrailingZeros(mask));
+                mask &= mask - 1;
+            }
+        }
+        finally {
+            period.exited.increment();
+        }
+    }
+
+    /**
+     *  enter method:
+     *  This method joins the current period as a writer.  A writer that
+     *  races with closePeriod backs out and joins the new period instead.
+     */
+
+    private Period enter() {
+        while (true) {
+            Period  period  = current;
+
+            period.entered.increment();
+            if (!period.closed)
+                return period;
+            period.exited.increment();
+        }
+    }
+
+    private static void add(Period period, Catalog.Category category,
+                            int index) {
+        long        price   = category.getPriceCents(index);
+        String      sku;
+        PartTotals  totals;
+
+        // Parts with no price, such as None, are not sales.
+        if (price == 0)
+            return;
+
+        sku = category.getSku(index);
+        totals = period.parts.get(sku);
+        if (totals == null)
+            totals = period.parts.computeIfAbsent(sku, key -> new PartTotals());
+
+        totals.units.increment();
+        totals.cents.add(price);
+    }
+
+    /**
+     *  closePeriod method:
+     *  This method ends the current period, starts the next one, and returns
+     *  the totals of the one that ended.  Sales recorded while it runs go
+     *  into one period or the other, never both.
+     */
+
+    public synchronized Snapshot closePeriod() {
+        Period  closing = current;
+        long    now     = System.currentTimeMillis();
+
+        current = new Period(now);
+        closing.closed = true;
+
+        while (!closing.isDrained())
+            Thread.onSpinWait();
+
+        return new Snapshot(closing, now);
+    }
+
+    /**
+     *  Snapshot class:
+     *  The final totals of a closed period.
+     */
+
+    public static final class Snapshot {
+        private final long                      startMillis;
+        private final long                      endMillis;
+        private final long                      orderCount;
+        private final TreeMap<String, long[]>   parts   =
+            new TreeMap<String, long[]>();
+        private long                            units;
+        private long                            cents;
+
+        private Snapshot(Period period, long endMillis) {
+            this.startMillis    = period.startMillis;
+            this.endMillis      = endMillis;
+            this.orderCount     = period.orders.sum();
+
+            for (Map.Entry<String, PartTotals> entry :
+                    period.parts.entrySet()) {
+                long    partUnits   = entry.getValue().units.sum();
+                long    partCents   = entry.getValue().cents.sum();
+
+                parts.put(entry.getKey(), new long[] { partUnits, partCents });
+                units += partUnits;
+                cents += partCents;
+            }
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public long getOrderCount() {
+            return orderCount;
+        }
+
+        public long getUnits() {
+            return units;
+        }
+
+        public long getCents() {
+            return cents;
+        }
+
+        public Iterable<String> getSkus() {
+            return parts.keySet();
+        }
+
+        public long getUnits(String sku) {
+            long[]  totals  = parts.get(sku);
+
+            return totals == null ? 0 : totals[0];
+        }
+
+        public long getCents(String sku) {
+            long[]  totals  = parts.get(sku);
+
+            return totals == null ? 0 : totals[1];
+        }
+
+        /**
+         *  writeTo method:
+         *  This method writes the totals as CSV lines of "sku,units,amount",
+         *  ending with a TOTAL line.
+         */
+
+        public void writeTo(Appendable out) throws IOException {
+            for (Map.Entry<String, long[]> entry : parts.entrySet()) {
+                out.append(entry.getKey()).append(',')
+                   .append(Long.toString(entry.getValue()[0])).append(',')
+                   .append(CurrencyFormatter.PLAIN.format(entry.getValue()[1]))
+                   .append('\n');
+            }
+            out.append("TOTAL,").append(Long.toString(units)).append(',')
+               .append(CurrencyFormatter.PLAIN.format(cents)).append('\n');
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *  The SalesMetrics class counts purchases, revenue and part selections and
+ *  times the pricing of each order, for operations to read over JMX as
+ *  SkateShop:type=SalesMetrics.
+ *
+ *  Every count is a LongAdder, which spreads concurrent updates over
+ *  separate cells, so recording from several threads never contends on one
+ *  value.  Part counts are kept by SKU, so they carry across catalog
+ *  reloads; after the first sale of a part, recording it is a map lookup
+ *  and an add, with nothing allocated.
+ */
+
+public class SalesMetrics implements SalesMetricsMXBean {
+    public static final String  OBJECT_NAME = "SkateShop:type=SalesMetrics";
+
+    private final LongAdder         purchases   = new LongAdder();
+    private final LongAdder         rejections  = new LongAdder();
+    private final LongAdder         outOfStock  = new LongAdder();
+    private final LongAdder         revenue     = new LongAdder();
+    private final LongAdder         salesTax    = new LongAdder();
+    private final LatencyHistogram  pricing     = new LatencyHistogram();
+    private final SalesAggregator   sales;
+
+    private final ConcurrentHashMap<String, LongAdder> decks    =
+        new ConcurrentHashMap<String, LongAdder>();
+    private final ConcurrentHashMap<String, LongAdder> trucks   =
+        new ConcurrentHashMap<String, LongAdder>();
+    private final ConcurrentHashMap<String, LongAdder> wheels   =
+        new ConcurrentHashMap<String, LongAdder>();
+    private final ConcurrentHashMap<String, LongAdder> accessories =
+        new ConcurrentHashMap<String, LongAdder>();
+
+    /**
+     *  SalesMetrics constructor:
+     *  The sales totals are only read, when a period is closed over JMX.
+     */
+
+    public SalesMetrics(SalesAggregator sales) {
+        this.sales = sales;
+    }
+
+    /**
+     *  register method:
+     *  This method registers the metrics with the platform MBean server.  A
+     *  failure is logged; the metrics are still recorded.
+     */
+
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    this, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException ex) {
+            Log.warn("Unable to register {}: {}", OBJECT_NAME, ex);
+        }
+    }
+
+    /**
+     *  recordPricing method:
+     *  This method records how long one order took to price.
+     */
+
+    public void recordPricing(long nanos) {
+        pricing.record(nanos);
+    }
+
+    /**
+     *  recordRejection method:
+     *  This method counts an order turned away because nothing was
+     *  selected.
+     */
+
+    public void recordRejection() {
+        rejections.increment();
+    }
+
+    /**
+     *  recordOutOfStock method:
+     *  This method counts an order turned away because a part was out of
+     *  stock.
+     */
+
+    public void recordOutOfStock() {
+        outOfStock.increment();
+    }
+
+    /**
+     *  recordPurchase method:
+     *  This method counts a completed purchase of the given parts, as
+     *  indices into the catalog they were chosen from, and its amounts in
+     *  cents.
+     */
+
+    public void recordPurchase(Catalog catalog, int deck, int truck,
+                               int wheel, int accessoryMask,
+                               long subtotalCents, long salesTaxCents) {
+        Catalog.Category    accessoryCategory   =
+            catalog.getCategory("Accessory");
+        int                 mask                = accessoryMask;
+
+        purchases.increment();
+        revenue.add(subtotalCents);
+        salesTax.add(salesTaxCents);
+
+        count(decks, catalog.getCategory("Deck").getSku(deck));
+        count(trucks, catalog.getCategory("Trucks").getSku(truck));
+        count(wheels, catalog.getCategory("Wheels").getSku(wheel));
+        while (mask != 0) {
+            count(accessories, accessoryCategory.getSku(
+                    Integer.numberOfTrailingZeros(mask)));
+            mask &= mask - 1;
+        }
+    }
+
+    private static void count(ConcurrentHashMap<String, LongAdder> counts,
+                              String sku) {
+        LongAdder   adder   = counts.get(sku);
+
+        if (adder == null)
+            adder = counts.computeIfAbsent(sku, key -> new LongAdder());
+        adder.increment();
+    }
+
+    private static Map<String, Long> snapshot(
+            ConcurrentHashMap<String, LongAdder> counts) {
+        TreeMap<String, Long>   result  = new TreeMap<String, Long>();
+
+        counts.forEach((sku, adder) -> result.put(sku, adder.sum()));
+        return result;
+    }
+
+    public long getPurchaseCount() {
+        return purchases.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    public long getOutOfStockCount() {
+        return outOfStock.sum();
+    }
+
+    public long getRevenueCents() {
+        return revenue.sum();
+    }
+
+    public long getSalesTaxCents() {
+        return salesTax.sum();
+    }
+
+    public Map<String, Long> getDeckSelections() {
+        return snapshot(decks);
+    }
+
+    public Map<String, Long> getTrucksSelections() {
+        return snapshot(trucks);
+    }
+
+    public Map<String, Long> getWheelsSelections() {
+        return snapshot(wheels);
+    }
+
+    public Map<String, Long> getAccessorySelections() {
+        return snapshot(accessories);
+    }
+
+    public long getPricingLatencyCount() {
+        return pricing.getCount();
+    }
+
+    public long getPricingLatencyMeanNanos() {
+        return pricing.getMean();
+    }
+
+    public long getPricingLatencyP50Nanos() {
+        return pricing.getPercentile(50);
+    }
+
+    public long getPricingLatencyP99Nanos() {
+        return pricing.getPercentile(99);
+    }
+
+    public long getPricingLatencyP999Nanos() {
+        return pricing.getPercentile(99.9);
+    }
+
+    public long getPricingLatencyMaxNanos() {
+        return pricing.getMax();
+    }
+
+    public String closeSalesPeriod() {
+        StringBuilder   report  = new StringBuilder();
+
+        try {
+            sales.closePeriod().writeTo(report);
+        }
+        catch (IOException ex) {
+            // A StringBuilder does not throw.
+            throw new UncheckedIOException(ex);
+        }
+        return report.toString();
+    }
+}
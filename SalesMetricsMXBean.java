@@ -0,0 +1,46 @@
+import java.util.Map;
+
+/**
+ *  The SalesMetricsMXBean interface is the JMX view of SalesMetrics.  Money
+ *  is in cents and latencies in nanoseconds.  Part counts are keyed by SKU.
+ */
+
+public interface SalesMetricsMXBean {
+    long getPurchaseCount();
+
+    long getRejectedCount();
+
+    long getOutOfStockCount();
+
+    long getRevenueCents();
+
+    long getSalesTaxCents();
+
+    Map<String, Long> getDeckSelections();
+
+    Map<String, Long> getTrucksSelections();
+
+    Map<String, Long> getWheelsSelections();
+
+    Map<String, Long> getAccessorySelections();
+
+    long getPricingLatencyCount();
+
+    long getPricingLatencyMeanNanos();
+
+    long getPricingLatencyP50Nanos();
+
+    long getPricingLatencyP99Nanos();
+
+    long getPricingLatencyP999Nanos();
+
+    long getPricingLatencyMaxNanos();
+
+    /**
+     *  closeSalesPeriod operation:
+     *  This operation ends the current sales period (for example, at the
+     *  end of the day) and returns its totals by SKU as CSV.
+     */
+
+    String closeSalesPeriod();
+}
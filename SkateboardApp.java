@@ -1,6 +1,10 @@
 import java.awt.*;
 import java.awt.event.*;
-import java.text.DecimalFormat;  // Needed for formatting the totals
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 
 /**
@@ -8,9 +12,17 @@ import javax.swing.*;
  */
 
 public class SkateboardApp extends JFrame {
-    private final double    SALES_TAX_RATE  = 0.06; // Sales tax rate
-    private final int       WINDOW_WIDTH    = 420;
-    private final int       WINDOW_HEIGHT   = 250;
+    private static final String CATALOG_FILE = "catalog.txt";
+    private static final String JOURNAL_DIR  = "journal";
+    private static final String INVENTORY_FILE = "inventory.txt";
+    private static final String TAX_FILE     = "tax.txt";
+    // Set skateshop.costDialog.reuse=false to build a dialog per purchase.
+    private static final boolean REUSE_COST_DIALOG = Boolean.parseBoolean(
+            System.getProperty("skateshop.costDialog.reuse", "true"));
+
+    private final int       WINDOW_WIDTH    = 480;
+    private final int       WINDOW_HEIGHT   = 280;
+    private final int       LIST_ROWS       = 5;  // Rows shown in each list
 
     private TitlePanel      titlePanel;     // To display a title
     private DeckPanel       deckPanel;      // Deck panel
@@ -21,15 +33,31 @@ public class SkateboardApp extends JFrame {
     private JButton         purchaseButton; // To calculate the cost
     private JButton         exitButton;     // To exit the application
 
+    private OrderService    orderService;   // Prices and records orders
+    private OrderService.CatalogView catalogView; // Shown in the panels
+    private Quote           quote;          // Reused for every order
+    private CostDialog      costDialog;     // Reused for every purchase
+
     protected JFrame        thisFrame;
     int                     windLeft;
     int                     windTop;
 
     /**
         Constructor
+        The window is set up and the splash screen shown right away; the
+        catalog is loaded, the pricing engine warmed up and the order journal
+        recovered in the background while the splash is up, and the panels
+        are added once that is done.  After that the catalog file is watched
+        and the panels follow each new version of it.
+        If serverAddress (host:port) is not null, orders go to that order
+        server instead, and the catalog comes from it.
+        startTime is the System.nanoTime() at which the application started.
     */
 
-    public SkateboardApp() {
+    public SkateboardApp(String catalogFile, String serverAddress,
+                         long startTime) {
+        SplashDialog    splash;
+
         thisFrame = this;
 
         // Display a title.
@@ -47,16 +75,217 @@ public class SkateboardApp extends JFrame {
         // Create a FlowLayout manager.
         setLayout(new FlowLayout(FlowLayout.CENTER));
 
+        splash = new SplashDialog(this);
+
+        // Run the startup work off the event dispatch thread, and finish
+        // the window on the EDT when it is done.
+        CompletableFuture<OrderService>     serviceTask =
+            serverAddress != null
+            ? CompletableFuture.supplyAsync(() -> connect(serverAddress))
+            : openLocalService(catalogFile);
+
+        serviceTask.whenComplete(
+                (service, ex) -> SwingUtilities.invokeLater(() -> {
+                    splash.close();
+                    if (ex != null)
+                        startupFailed(ex);
+                    else
+                        finishStartup(service, startTime);
+                }));
+    }
+
+    /**
+     *  openLocalService method:
+     *  This method starts the work for taking orders in this process.  The
+     *  journal is recovered and the stock levels read while the catalog is
+     *  loaded and the engine built from it.
+     */
+
+    private static CompletableFuture<OrderService> openLocalService(
+            String catalogFile) {
+        CompletableFuture<CatalogStore>     catalogTask =
+            CompletableFuture.supplyAsync(() -> openCatalog(catalogFile))
+                             .thenApplyAsync(store -> {
+                    warmUp(store.current().getEngine());
+                    return store;
+                });
+        CompletableFuture<Inventory>        inventoryTask =
+            CompletableFuture.supplyAsync(() -> loadInventory(INVENTORY_FILE));
+        CompletableFuture<OrderJournal>     journalTask =
+            CompletableFuture.supplyAsync(() -> openJournal(JOURNAL_DIR));
+
+        return CompletableFuture.allOf(catalogTask, inventoryTask,
+                                       journalTask).thenApply(done -> {
+            CatalogStore        store   = catalogTask.join();
+            LocalOrderService   service;
+
+            try {
+                service = new LocalOrderService(store, inventoryTask.join(),
+                                                journalTask.join());
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            service.getMetrics().register();
+            try {
+                store.startWatching();
+            }
+            catch (IOException ex) {
+                Log.error("Unable to watch the catalog for changes", ex);
+            }
+            return service;
+        });
+    }
+
+    /**
+     *  connect method:
+     *  This method connects to an order server and fetches its catalog.  It
+     *  runs on a startup thread.
+     */
+
+    private static OrderService connect(String serverAddress) {
+        long    start   = System.nanoTime();
+
+        try {
+            OrderService    service =
+                RemoteOrderService.connect(serverAddress);
+
+            Log.info("Connected to the order server at {} in {} ms",
+                     serverAddress, (System.nanoTime() - start) / 1_000_000);
+            return service;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *  openCatalog method:
+     *  This method loads the parts catalog and tax rules and builds their
+     *  pricing engine.
+     *  It runs on a startup thread.
+     */
+
+    private static CatalogStore openCatalog(String catalogFile) {
+        long    start   = System.nanoTime();
+
+        try {
+            CatalogStore    store   =
+                new CatalogStore(catalogFile, TAX_FILE);
+
+            Log.info("Loaded {} in {} ms", catalogFile,
+                     (System.nanoTime() - start) / 1_000_000);
+            return store;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *  loadInventory method:
+     *  This method reads the stock levels.  It runs on a startup thread.
+     */
+
+    private static Inventory loadInventory(String inventoryFile) {
+        try {
+            return Inventory.load(inventoryFile);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *  openJournal method:
+     *  This method opens the order journal, recovering the records already
+     *  in it.  It runs on a startup thread.
+     */
+
+    private static OrderJournal openJournal(String directory) {
+        long    start   = System.nanoTime();
+
+        try {
+            OrderJournal    journal = new OrderJournal(directory);
+
+            Log.info("Recovered {} journaled orders in {} ms",
+                     journal.getRecoveredCount(),
+                     (System.nanoTime() - start) / 1_000_000);
+            return journal;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *  warmUp method:
+     *  This method prices a spread of part combinations so that the engine
+     *  is compiled before the first real purchase.  It runs on a startup
+     *  thread.
+     */
+
+    private static PricingEngine warmUp(PricingEngine engine) {
+        final int   CALLS       = 20_000;
+        long        start       = System.nanoTime();
+        Quote       quote       = new Quote();
+        int         maskLimit   =
+            (1 << Math.min(engine.getAccessoryCount(), 8)) - 1;
+
+        for (int call = 0; call < CALLS; call++) {
+            engine.price(call % engine.getDeckCount(),
+                         (call / 3) % engine.getTrucksCount(),
+                         (call / 7) % engine.getWheelsCount(),
+                         call & maskLimit, quote);
+        }
+
+        if (Log.isDebugEnabled())
+            Log.debug("Pricing warm-up took {} ms (full quote table: {})",
+                      (System.nanoTime() - start) / 1_000_000,
+                      engine.getQuoteTable().isFull());
+        return engine;
+    }
+
+    /**
+     *  finishStartup method:
+     *  This method builds the panels from the service's catalog and shows
+     *  the window.  It runs on the event dispatch thread.
+     */
+
+    private void finishStartup(OrderService service, long startTime) {
+        Catalog catalog;
+
+        orderService = service;
+        catalogView = service.getCatalog();
+        catalog = catalogView.getCatalog();
+
         // Create the custom panels.
         titlePanel = new TitlePanel();
-        deckPanel = new DeckPanel();
-        trucksPanel = new TrucksPanel();
-        wheelsPanel = new WheelsPanel();
-        accessoryPanel = new AccessoryPanel();
+        deckPanel = new DeckPanel(catalog.getCategory("Deck"));
+        trucksPanel = new TrucksPanel(catalog.getCategory("Trucks"));
+        wheelsPanel = new WheelsPanel(catalog.getCategory("Wheels"));
+        accessoryPanel = new AccessoryPanel(catalog.getCategory("Accessory"));
+
+        quote = new Quote();
+
+        // Make sure the last orders reach the disk however the app exits.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                orderService.close();
+            }
+            catch (IOException ex) {
+                Log.error("Unable to close the order service", ex);
+            }
+        }, "order-service-close"));
 
         // Create the button panel.
         buildButtonPanel();
 
+        // Build the cost dialog now rather than on the first purchase.
+        if (REUSE_COST_DIALOG)
+            getCostDialog();
+
         add(titlePanel);
         add(deckPanel);
         add(trucksPanel);
@@ -64,11 +293,80 @@ public class SkateboardApp extends JFrame {
         add(accessoryPanel);
         add(buttonPanel);
 
-        new SplashDialog(this);
-
         // Pack the contents of the window and display it.
         pack();
         setVisible(true);
+
+        // A new catalog is parsed off the EDT; only the switch of the
+        // panels to it runs here.
+        orderService.addCatalogListener(
+                next -> SwingUtilities.invokeLater(() -> showCatalog(next)));
+        showCatalog(orderService.getCatalog());
+
+        // Report once the events queued by showing the window have run.
+        SwingUtilities.invokeLater(() -> Log.info(
+                "Ready in {} ms", (System.nanoTime() - startTime) / 1_000_000));
+    }
+
+    /**
+     *  showCatalog method:
+     *  This method switches the panels and the Purchase button to a new
+     *  version of the catalog.  A version missing one of the categories is
+     *  ignored.  It runs on the event dispatch thread.
+     */
+
+    private void showCatalog(OrderService.CatalogView next) {
+        Catalog             catalog = next.getCatalog();
+        Catalog.Category    decks;
+        Catalog.Category    trucks;
+        Catalog.Category    wheels;
+        Catalog.Category    accessories;
+
+        // Skip a version that is already shown or has been replaced.
+        if (next.getVersion() <= catalogView.getVersion())
+            return;
+
+        try {
+            decks = catalog.getCategory("Deck");
+            trucks = catalog.getCategory("Trucks");
+            wheels = catalog.getCategory("Wheels");
+            accessories = catalog.getCategory("Accessory");
+        }
+        catch (IllegalArgumentException ex) {
+            Log.warn("Not showing catalog version {}: {}",
+                     next.getVersion(), ex.getMessage());
+            return;
+        }
+
+        deckPanel.setCategory(decks);
+        trucksPanel.setCategory(trucks);
+        wheelsPanel.setCategory(wheels);
+        accessoryPanel.setCategory(accessories);
+        catalogView = next;
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     *  startupFailed method:
+     *  This method tells the user why the application could not start and
+     *  exits.  It runs on the event dispatch thread.
+     */
+
+    private void startupFailed(Throwable ex) {
+        Throwable   cause   = ex;
+
+        // Unwrap the exceptions added by the startup tasks.
+        while ((cause instanceof CompletionException ||
+                cause instanceof UncheckedIOException) &&
+               cause.getCause() != null)
+            cause = cause.getCause();
+
+        Log.error("Startup failed", cause);
+        JOptionPane.showMessageDialog(null, "The Skate Shop could not " +
+                                      "start:\n" + cause.getMessage());
+        System.exit(1);
     }
 
     /**
@@ -115,40 +413,123 @@ public class SkateboardApp extends JFrame {
 
     private class PurchaseButtonListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
-            // Variables to hold the subtotal, sales tax, and total
-            double  salesTax;
-            double  subtotal;
-            double  total;
-
-            // Calculate the subtotal.
-            subtotal = deckPanel.getDeckCost() + 
-                       trucksPanel.getTrucksCost() +
-                       wheelsPanel.getWheelsCost() +
-                       accessoryPanel.getAccessoryCost();
-
-            if (subtotal == 0) {
-                // Tell the user to select something.
-                JOptionPane.showMessageDialog(null, "No items have been " +
-                                              "selected.");
-            }
-            else {
-                // Calculate the sales tax.
-                salesTax = subtotal * SALES_TAX_RATE;
-
-                // Calculate the total.
-                total = subtotal + salesTax;
-
-                // Display the costs.
-                new CostDialog(thisFrame, windLeft, windTop, subtotal,
-                               salesTax, total);
-
-                // Clear all of the selections back to None.
-                deckPanel.clearSelection();
-                trucksPanel.clearSelection();
-                wheelsPanel.clearSelection();
-                accessoryPanel.clearSelection();
-            }
+            long    clickTime   = System.nanoTime();
+            long    version     = catalogView.getVersion();
+            int     deck        = deckPanel.getSelectedIndex();
+            int     trucks      = trucksPanel.getSelectedIndex();
+            int     wheels      = wheelsPanel.getSelectedIndex();
+            int     mask        = accessoryPanel.getSelectedMask();
+
+            // The order may go over the network, so it is sent from a
+            // worker thread; one purchase at a time.
+            purchaseButton.setEnabled(false);
+            new SwingWorker<OrderService.Status, Void>() {
+                protected OrderService.Status doInBackground()
+                        throws IOException {
+                    // Price and record the selected parts, as indices into
+                    // the catalog they were chosen from.
+                    return orderService.purchase(version, deck, trucks,
+                                                 wheels, mask, quote);
+                }
+
+                protected void done() {
+                    purchaseButton.setEnabled(true);
+                    showResult(this, clickTime);
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     *  showResult method:
+     *  This method tells the user how a purchase went.  It runs on the
+     *  event dispatch thread once the purchase is done.
+     */
+
+    private void showResult(SwingWorker<OrderService.Status, Void> worker,
+                            long clickTime) {
+        OrderService.Status status;
+
+        try {
+            status = worker.get();
+        }
+        catch (ExecutionException ex) {
+            Log.error("Unable to record the order", ex.getCause());
+            JOptionPane.showMessageDialog(null, "This order could not " +
+                                          "be recorded.");
+            return;
+        }
+        catch (InterruptedException ex) {
+            // Not reached: the worker is done.
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (status == OrderService.Status.STALE) {
+            // The prices changed under the order.  The service has told
+            // the catalog listener, which shows the new version.
+            JOptionPane.showMessageDialog(null, "The catalog has " +
+                                          "changed.  Please select the " +
+                                          "parts again.");
+        }
+        else if (status == OrderService.Status.OUT_OF_STOCK) {
+            // Say which part to take out of the order.
+            JOptionPane.showMessageDialog(null, "Sorry, " +
+                    partName(quote.getUnavailableSku()) +
+                    " is out of stock.");
+        }
+        else if (status == OrderService.Status.REJECTED) {
+            // Tell the user to select something.
+            JOptionPane.showMessageDialog(null, "No items have been " +
+                                          "selected.");
+        }
+        else {
+            // Display the costs.
+            getCostDialog().showCosts(quote.getSubtotalCents(),
+                                      quote.getSalesTaxCents(),
+                                      quote.getTotalCents(), clickTime);
+
+            // Clear all of the selections back to None.
+            deckPanel.clearSelection();
+            trucksPanel.clearSelection();
+            wheelsPanel.clearSelection();
+            accessoryPanel.clearSelection();
+        }
+    }
+
+    /**
+     *  partName method:
+     *  This method returns the name of the part with a SKU in the catalog
+     *  shown, or the SKU itself if it is not there.
+     */
+
+    private String partName(String sku) {
+        Catalog catalog = catalogView.getCatalog();
+
+        for (int index = 0; index < catalog.getCategoryCount(); index++) {
+            Catalog.Category    category    = catalog.getCategory(index);
+            int                 part        = category.indexOfSku(sku);
+
+            if (part >= 0)
+                return category.getName(part);
         }
+
+        return sku;
+    }
+
+    /**
+     *  getCostDialog method:
+     *  This method returns the dialog to show the costs of a purchase in,
+     *  building it the first time (or every time, if reuse is turned off).
+     */
+
+    private CostDialog getCostDialog() {
+        if (!REUSE_COST_DIALOG)
+            return new CostDialog(thisFrame, windLeft, windTop, false);
+
+        if (costDialog == null)
+            costDialog = new CostDialog(thisFrame, windLeft, windTop, true);
+        return costDialog;
     }
 
     /**
@@ -219,17 +600,17 @@ public class SkateboardApp extends JFrame {
             for (JPanel panel : splashPanels)
                 getContentPane().add(panel);
 
-            // Make the dialog visible.
+            // Make the dialog visible.  It stays up until close is called
+            // when startup is finished.
             setVisible(true);
+        }
 
-            // Splash the dialog for a while
-            try {
-                Thread.sleep(2500);
-            }
-            catch (InterruptedException ex) {
-            }
+        /**
+         *  close method:
+         *  This method makes the dialog invisible and closes it.
+         */
 
-            // Make the dialog invisible and close it.
+        public void close() {
             setVisible(false);
             dispose();
         }
@@ -278,6 +659,8 @@ public class SkateboardApp extends JFrame {
     /**
      *  CostDialog class:
      *  Display a modal dialog with the total cost including the breakdown.
+     *  The dialog is built once and hidden when OK is clicked; each purchase
+     *  only changes the amounts on it.
      */
 
     private class CostDialog extends JDialog {
@@ -290,26 +673,27 @@ public class SkateboardApp extends JFrame {
         // Cost panels.
         JPanel                  buttonPanel;
         private JPanel          costTitlePanel;
-        private JPanel          textsPanel;
-        private JPanel          valuesPanel;
+        private CostPanel       textsPanel;
+        private CostPanel       valuesPanel;
 
         // Panel elements.
-        private String          salesTaxStr;
-        private String          subtotalStr;
-        private String          totalStr;
         private JButton         okButton;
 
-        // Used to format the total amounts.
-        private DecimalFormat   dollar;
+        // Whether OK hides the dialog for reuse or disposes of it.
+        private final boolean   reusable;
+        // System.nanoTime() of the click that is showing the dialog.
+        private long            clickTime;
 
         /**
          *  CostDialog constructor:
          */
 
         public CostDialog(JFrame parentFrame, int windLeft, int windTop,
-                          double subtotal, double salesTax, double total) {
+                          boolean reusable) {
             super(parentFrame, "Total Purchase", true);
 
+            this.reusable = reusable;
+
             // Set the dimensions of the dialog.
             setSize(WINDOW_WIDTH, WINDOW_HEIGHT);
 
@@ -320,18 +704,13 @@ public class SkateboardApp extends JFrame {
             // Use the border layout manager.
             setLayout(new BorderLayout());
 
-            // Format the money variables as strings to use as labels.
-            dollar = new DecimalFormat("0.00");
-            subtotalStr = "$" + dollar.format(subtotal);
-            salesTaxStr = "$" + dollar.format(salesTax);
-            totalStr = "$" + dollar.format(total);
-
             costTitlePanel = new CostTitlePanel("Your Total Purchase");
 
             String[] texts = { "Subtotal", "Sales Tax", "Total" };
             textsPanel = new CostPanel(texts);
 
-            String[] values = { subtotalStr, salesTaxStr, totalStr };
+            // The amounts are filled in by showCosts.
+            String[] values = { "", "", "" };
             valuesPanel = new CostPanel(values);
 
             buttonPanel = new ButtonPanel();
@@ -341,6 +720,33 @@ public class SkateboardApp extends JFrame {
             getContentPane().add(valuesPanel, BorderLayout.EAST);
             getContentPane().add(buttonPanel, BorderLayout.SOUTH);
 
+            // Report how long the purchase took to reach the screen.
+            addComponentListener(new ComponentAdapter() {
+                public void componentShown(ComponentEvent e) {
+                    Log.debug("Cost dialog visible {} us after the click",
+                              (System.nanoTime() - clickTime) / 1_000);
+                }
+            });
+        }
+
+        /**
+         *  showCosts method:
+         *  This method puts the amounts, in cents, on the dialog and shows
+         *  it.  It returns when the user clicks OK.
+         */
+
+        public void showCosts(long subtotal, long salesTax, long total,
+                              long clickTime) {
+            this.clickTime = clickTime;
+
+            // Format the amounts in cents as strings to use as labels.
+            valuesPanel.setText(0, CurrencyFormatter.DOLLARS.format(subtotal));
+            valuesPanel.setText(1, CurrencyFormatter.DOLLARS.format(salesTax));
+            valuesPanel.setText(2, CurrencyFormatter.DOLLARS.format(total));
+
+            // Size the amounts column to the new labels.
+            validate();
+
             setVisible(true);
         }
 
@@ -351,13 +757,21 @@ public class SkateboardApp extends JFrame {
         }
 
         private class CostPanel extends JPanel {
+            private final JLabel[]  labels;
+
             public CostPanel(String[] texts) {
                 setLayout(new GridLayout(3, 1));
 
-                for (String text : texts) {
-                    add(new JLabel(text, JLabel.RIGHT));
+                labels = new JLabel[texts.length];
+                for (int index = 0; index < texts.length; index++) {
+                    labels[index] = new JLabel(texts[index], JLabel.RIGHT);
+                    add(labels[index]);
                 }
             }
+
+            public void setText(int index, String text) {
+                labels[index].setText(text);
+            }
         }
 
         private class ButtonPanel extends JPanel {
@@ -372,9 +786,11 @@ public class SkateboardApp extends JFrame {
 
         private class ButtonListener implements ActionListener {
             public void actionPerformed(ActionEvent e) {
-                // Make this dialog invisible and close it.
+                // Make this dialog invisible, keeping it for the next
+                // purchase unless it is a one-off.
                 setVisible(false);
-                dispose();
+                if (!reusable)
+                    dispose();
             }
         }
     }
@@ -421,90 +837,83 @@ public class SkateboardApp extends JFrame {
      */
 
     private class DeckPanel extends JPanel {
-        // The title of the panel.
-        private final String    PANEL_TITLE             = "Decks";
-        // These are the names and prices of each deck.
-        private final String[]  PART_NAMES              = {
-            "None", "Master Thrasher", "Dictator", "Street King"
-        };
-        private final double[]  PART_PRICES             = {
-            0.00, 60.00, 45.00, 50.00
-        };
-
-        private Debug           debug;
+        // The parts to choose from, read by the list as it needs them.
+        private CatalogListModel    model;
 
         // The deck list to be added to the panel.
-        private JList<String>   deckList;
+        private JList<String>       deckList;
+
+        // Narrows the list and holds the selected part.
+        private PartSearchField     search;
 
         /**
          *  DeckPanel constructor:
          */
 
-        public DeckPanel() {
-            // FIXME: DEBUG
-            debug = new Debug();
-
-            setPreferredSize(new Dimension(120, 120));
+        public DeckPanel(Catalog.Category category) {
+            model = new CatalogListModel(category);
 
             // KEEP THIS FOR REFERENCE!
             // JList issue - use the latter vs. the former:
             //JList deckList = new JList(PART_NAMES);
             //JList<String> deckList = new JList<String>(PART_NAMES);
 
-            deckList = new JList<String>(PART_NAMES);
+            deckList = new JList<String>(model);
+
+            // Size every row from one sample, so that the list never
+            // measures them all, and scroll the rows that do not fit.
+            deckList.setPrototypeCellValue(model.getPrototype());
+            deckList.setVisibleRowCount(LIST_ROWS);
 
             deckList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 
+            search = new PartSearchField(deckList, model);
+
             deckList.setSelectedIndex(0);
 
             // Add a 'Decks' border around the panel.
-            setBorder(BorderFactory.createTitledBorder(PANEL_TITLE));
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
 
             // Add the deck list to the panel.
-            add(deckList);
+            setLayout(new BorderLayout());
+            add(search, BorderLayout.NORTH);
+            add(new JScrollPane(deckList), BorderLayout.CENTER);
+        }
+
+        /**
+         *  setCategory method:
+         *  This method shows the decks of a new version of the catalog.
+         */
+
+        public void setCategory(Catalog.Category category) {
+            search.setCategory(category);
+            deckList.setPrototypeCellValue(model.getPrototype());
+            deckList.setSelectedIndex(0);
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
         }
 
         public void clearSelection() {
+            search.clear();
             deckList.setSelectedIndex(0);
         }
 
         /**
-         *  getDeckCost method:
-         *  This method returns the cost of the selected deck.
+         *  getSelectedIndex method:
+         *  This method returns the index of the selected deck.
          */
 
-        public double getDeckCost() {
-            // The following variable will hold the cost
-            // of the selected deck.
-            double  deckCost        = 0.0;
+        public int getSelectedIndex() {
+            int     part    = search.getSelectedPart();
 
             // Protect against crashing due to the user clearing all
             // selections.
-            if (deckList.isSelectionEmpty()) {
-                //System.out.println("DEBUG: deck: NONE");
-                debug.println("deck: NONE");
-                deckList.setSelectedIndex(0);
+            if (part < 0) {
+                Log.debug("deck: NONE");
+                clearSelection();
+                part = 0;
             }
 
-            // Determine which deck was selected.
-            Object  selection       = deckList.getSelectedValue();
-            String  selectionStr    = selection.toString();
-
-            //System.out.println("DEBUG: deck: " + selection.toString());
-            debug.println("deck: " + selection.toString());
-
-            // Determine the price of this deck.
-            for (int index = 0; index < PART_NAMES.length; index++) {
-                if (PART_NAMES[index] == selectionStr) {
-                    deckCost = PART_PRICES[index];
-                    //System.out.println("DEBUG: price: $" + price);
-                    debug.println("price: $" + deckCost);
-                    break;
-                }
-            }
-
-            // Return the cost of the selected deck.
-            return deckCost;
+            return part;
         }
     }
 
@@ -515,82 +924,76 @@ public class SkateboardApp extends JFrame {
      */
 
     private class TrucksPanel extends JPanel {
-        // The title of the panel.
-        private final String    PANEL_TITLE             = "Trucks";
-        // These are the names and prices of each trucks assembly.
-        private final String[]  PART_NAMES              = {
-            "None", "7.75\" axle", "8.00\" axle", "8.50\" axle"
-        };
-        private final double[]  PART_PRICES             = {
-            0.00, 35.00, 40.00, 45.00
-        };
-
-        // FIXME: DEBUG
-        private Debug           debug;
+        // The parts to choose from, read by the list as it needs them.
+        private CatalogListModel    model;
 
         // The trucks list to be added to the panel.
-        private JList<String>   trucksList;
+        private JList<String>       trucksList;
+
+        // Narrows the list and holds the selected part.
+        private PartSearchField     search;
         
         /**
          *  Constructor
          */
 
-        public TrucksPanel() {
-            debug = new Debug();
+        public TrucksPanel(Catalog.Category category) {
+            model = new CatalogListModel(category);
 
-            setPreferredSize(new Dimension(80, 120));
+            trucksList = new JList<String>(model);
 
-            trucksList = new JList<String>(PART_NAMES);
+            trucksList.setPrototypeCellValue(model.getPrototype());
+            trucksList.setVisibleRowCount(LIST_ROWS);
 
             trucksList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 
+            search = new PartSearchField(trucksList, model);
+
             trucksList.setSelectedIndex(0);
 
             // Add a 'Trucks' border around the panel.
-            setBorder(BorderFactory.createTitledBorder("Trucks"));
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
 
             // Add the trucks list to the panel.
-            add(trucksList);
+            setLayout(new BorderLayout());
+            add(search, BorderLayout.NORTH);
+            add(new JScrollPane(trucksList), BorderLayout.CENTER);
+        }
+
+        /**
+         *  setCategory method:
+         *  This method shows the trucks of a new version of the catalog.
+         */
+
+        public void setCategory(Catalog.Category category) {
+            search.setCategory(category);
+            trucksList.setPrototypeCellValue(model.getPrototype());
+            trucksList.setSelectedIndex(0);
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
         }
 
         public void clearSelection() {
+            search.clear();
             trucksList.setSelectedIndex(0);
         }
 
         /**
-         *  getTrucksCost method:
-         *  This method returns the cost of the selected trucks assembly.
+         *  getSelectedIndex method:
+         *  This method returns the index of the selected trucks assembly.
          */
 
-        public double getTrucksCost() {
-            // The following variable will hold the cost
-            // of the selected trucks.
-            double  trucksCost      = 0.0;
+        public int getSelectedIndex() {
+            int     part    = search.getSelectedPart();
 
             // Protect against crashing due to the user clearing all
             // selections.
-            if (trucksList.isSelectionEmpty()) {
-                debug.println("trucks: NONE");
-                trucksList.setSelectedIndex(0);
+            if (part < 0) {
+                Log.debug("trucks: NONE");
+                clearSelection();
+                part = 0;
             }
 
-            // Determine which trucks assembly was selected.
-            Object  selection       = trucksList.getSelectedValue();
-            String  selectionStr    = selection.toString();
-
-            debug.println("trucks: " + selection.toString());
-
-            // Determine the price of this deck.
-            for (int index = 0; index < PART_NAMES.length; index++) {
-                if (PART_NAMES[index] == selectionStr) {
-                    trucksCost = PART_PRICES[index];
-                    debug.println("price: $" + trucksCost);
-                    break;
-                }
-            }
-
-            // Return the cost of the selected trucks assembly.
-            return trucksCost;
+            return part;
         }
     }
 
@@ -600,80 +1003,76 @@ public class SkateboardApp extends JFrame {
      */
 
     private class WheelsPanel extends JPanel {
-        // These are the names and prices of each set of wheels.
-        private final String[]  PART_NAMES  = {
-            "None", "51 mm", "55 mm", "58 mm", "61 mm"
-        };
-        private final double[]  PART_PRICES = {
-            0.00, 20.00, 22.00, 24.00, 28.00
-        };
-
-        // FIXME: DEBUG
-        private Debug           debug;
+        // The parts to choose from, read by the list as it needs them.
+        private CatalogListModel    model;
 
         // The wheels list to be added to the panel.
-        private JList<String>   wheelsList;
+        private JList<String>       wheelsList;
+
+        // Narrows the list and holds the selected part.
+        private PartSearchField     search;
         
         /**
          *  Constructor
          */
 
-        public WheelsPanel() {
-            debug = new Debug();
+        public WheelsPanel(Catalog.Category category) {
+            model = new CatalogListModel(category);
 
-            setPreferredSize(new Dimension(60, 120));
+            wheelsList = new JList<String>(model);
 
-            wheelsList = new JList<String>(PART_NAMES);
+            wheelsList.setPrototypeCellValue(model.getPrototype());
+            wheelsList.setVisibleRowCount(LIST_ROWS);
 
             wheelsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 
+            search = new PartSearchField(wheelsList, model);
+
             wheelsList.setSelectedIndex(0);
 
             // Add a border around the panel.
-            setBorder(BorderFactory.createTitledBorder("Wheels"));
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
 
             // Add the wheels list to the panel.
-            add(wheelsList);
+            setLayout(new BorderLayout());
+            add(search, BorderLayout.NORTH);
+            add(new JScrollPane(wheelsList), BorderLayout.CENTER);
+        }
+
+        /**
+         *  setCategory method:
+         *  This method shows the wheels of a new version of the catalog.
+         */
+
+        public void setCategory(Catalog.Category category) {
+            search.setCategory(category);
+            wheelsList.setPrototypeCellValue(model.getPrototype());
+            wheelsList.setSelectedIndex(0);
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
         }
 
         public void clearSelection() {
+            search.clear();
             wheelsList.setSelectedIndex(0);
         }
 
         /**
-         *  getWheelsCost method:
-         *  This method returns the cost of the selected set of wheels.
+         *  getSelectedIndex method:
+         *  This method returns the index of the selected set of wheels.
          */
 
-        public double getWheelsCost() {
-            // The following variable will hold the cost of the selected set
-            // of wheels.
-            double  wheelsCost      = 0.0;
+        public int getSelectedIndex() {
+            int     part    = search.getSelectedPart();
 
             // Protect against crashing due to the user clearing all
             // selections.
-            if (wheelsList.isSelectionEmpty()) {
-                debug.println("wheels: NONE");
-                wheelsList.setSelectedIndex(0);
+            if (part < 0) {
+                Log.debug("wheels: NONE");
+                clearSelection();
+                part = 0;
             }
 
-            // Determine which set of wheels was selected.
-            Object  selection       = wheelsList.getSelectedValue();
-            String  selectionStr    = selection.toString();
-
-            debug.println("wheels: " + selection.toString());
-
-            // Determine the price of this wheels set.
-            for (int index = 0; index < PART_NAMES.length; index++) {
-                if (PART_NAMES[index] == selectionStr) {
-                    wheelsCost = PART_PRICES[index];
-                    debug.println("price: $" + wheelsCost);
-                    break;
-                }
-            }
-
-            // Return the cost of the selected set of wheels.
-            return wheelsCost;
+            return part;
         }
     }
 
@@ -683,96 +1082,90 @@ public class SkateboardApp extends JFrame {
      */
 
     public class AccessoryPanel extends JPanel {
-        // The title of the panel.
-        private final String    PANEL_TITLE = "Accessories";
-        // These are the names and prices of each accessory.
-        private final String[]  PART_NAMES  = {
-            "Grip tape", "Bearings", "Riser pads", "Nuts & bolts kit"
-        };
-        private final double[]  PART_PRICES = {
-            10.00, 30.00, 2.00, 3.00
-        };
-
-        // FIXME: DEBUG
-        Debug                   debug;
+        // The parts to choose from, read by the list as it needs them.
+        private CatalogListModel    model;
 
         // The accessory list to be added to the panel.
-        private JList<String>   accessoryList;
+        private JList<String>       accessoryList;
+
+        // Narrows the list and holds the selected accessories.
+        private PartSearchField     search;
 
         /**
          * Constructor
          */
 
-        public AccessoryPanel() {
-            // FIXME: temp
-            debug = new Debug();
+        public AccessoryPanel(Catalog.Category category) {
+            model = new CatalogListModel(category);
 
-            setPreferredSize(new Dimension(110, 120));  // FIXME
+            accessoryList = new JList<String>(model);
 
-            accessoryList = new JList<String>(PART_NAMES);
+            accessoryList.setPrototypeCellValue(model.getPrototype());
+            accessoryList.setVisibleRowCount(LIST_ROWS);
 
             accessoryList.setSelectionMode(
                     ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
+            search = new PartSearchField(accessoryList, model);
+
             // Add an 'Accessories' border around the panel.
-            setBorder(BorderFactory.createTitledBorder(PANEL_TITLE));
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
 
             // Add the accessory list to the panel.
-            add(accessoryList);
+            setLayout(new BorderLayout());
+            add(search, BorderLayout.NORTH);
+            add(new JScrollPane(accessoryList), BorderLayout.CENTER);
+        }
+
+        /**
+         *  setCategory method:
+         *  This method shows the accessories of a new version of the catalog.
+         */
+
+        public void setCategory(Catalog.Category category) {
+            search.setCategory(category);
+            accessoryList.setPrototypeCellValue(model.getPrototype());
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
         }
 
         public void clearSelection() {
             // Clear all selected items.
+            search.clear();
             accessoryList.clearSelection();
         }
 
         /**
-         *  getAccessoryCost method:
-         * This method returns the cost of the selected accessories.
+         *  getSelectedMask method:
+         *  This method returns a bit mask of the selected accessories, where
+         *  bit n is set when accessory n is selected, including any that the
+         *  search is hiding.  It does not allocate.
          */
 
-        public double getAccessoryCost() {
-            // The following variable will hold the cost of the selected
-            // accessories.
-            double accessoryCost = 0.0;
-
-            if (accessoryList.isSelectionEmpty())
-                debug.println("accessory: NONE");
-
-            // Determine which accessories were selected, if any.
-            java.util.List selections = accessoryList.getSelectedValuesList();
-
-            // Process all of the accessories selected, if any.
-            for (Object selection : selections) {
-                double  price           = 0.00;
-                String  selectionStr    = selection.toString();
-
-                debug.println("accessory: " + selectionStr);
+        public int getSelectedMask() {
+            if (search.getSelectedPart() < 0)
+                Log.debug("accessory: NONE");
 
-                // Determine the price of this accessory.
-                for (int index = 0; index < PART_NAMES.length; index++) {
-                    if (PART_NAMES[index] == selectionStr) {
-                        price = PART_PRICES[index];
-                        debug.println("price: $" + price);
-                        break;
-                    }
-                }
-
-                // Add the price to the accessory cost total.
-                accessoryCost += price;
-            }
-
-            // Return the accessory cost.
-            return accessoryCost;
+            return search.getSelectedMask();
         }
     }
 
     /**
      *  main method:
-     *  This creates a SkateboardApp object which runs the application.
+     *  This creates a SkateboardApp object on the event dispatch thread,
+     *  which runs the application.  The catalog file may be given as the
+     *  first argument.  With -Dskateshop.server=host:port the app is a
+     *  register for that order server instead.
      */
     
     public static void main(String[] args) {
-        new SkateboardApp();
+        long    startTime   = System.nanoTime();
+        String  catalogFile = args.length > 0 ? args[0] : CATALOG_FILE;
+        String  server      = System.getProperty("skateshop.server");
+
+        // Time the event dispatch thread if asked to.
+        EdtMonitor.installIfEnabled();
+
+        SwingUtilities.invokeLater(
+                () -> new SkateboardApp(catalogFile, server, startTime));
     }
 }
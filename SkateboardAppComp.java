@@ -1,7 +1,9 @@
 import java.awt.*;
 import java.awt.event.*;
-import java.text.DecimalFormat;  // Needed for formatting the totals
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.swing.*;
 
 /**
@@ -9,76 +11,151 @@ import javax.swing.*;
  */
 
 public class SkateboardAppComp extends JFrame {
-    enum ElemType           { NULL, BUTTON, LABEL, LIST }
+    private static final String CATALOG_FILE = "catalog.txt";
+    private static final String TAX_FILE     = "tax.txt";
 
-    private final double    SALES_TAX_RATE  = 0.06; // Sales tax rate
-    private final int       WINDOW_WIDTH    = 420;
-    private final int       WINDOW_HEIGHT   = 250;
+    private final int       LIST_ROWS       = 5;  // Rows shown in each list
 
     private TitlePanel      titlePanel;     // To display a title
-    private DeckPanel       deckPanel;      // Deck panel
-    private TrucksPanel     trucksPanel;    // Trucks panel
-    private WheelsPanel     wheelsPanel;    // Wheels panel
-    private AccessoryPanel  accessoryPanel; // Accessory panel
+    private CategoryPanel[] categoryPanels; // One per catalog category
+    private JPanel          choicePanel;    // To hold the category panels
     private JPanel          buttonPanel;    // To hold the buttons
     private JButton         purchaseButton; // To calculate the cost
     private JButton         exitButton;     // To exit the application
 
-    protected Elements      mainElements;
+    private CatalogPricer   pricer;         // Prices the choices
+    private int[]           choices;        // By category, reused
+    private Quote           quote;          // Reused for every order
 
     protected JFrame        thisFrame;
     protected int           windLeft;
     protected int           windTop;
 
-    private Debug           debug;
-
     /**
         Constructor
+        The splash screen is shown right away, and the catalog and tax rules
+        are loaded in the background while it is up.  Then a panel is built
+        for each category of the catalog, in catalog order, single or
+        multiple choice as the catalog says, so a new category needs no
+        code.  The orders are taxed at the shop's rates.
     */
 
-    public SkateboardAppComp() {
-        thisFrame = this;
-        mainElements = new Elements();
+    public SkateboardAppComp(String catalogFile) {
+        SplashDialog    splash;
 
-        // FIXME: DEBUG
-        debug = new Debug();
+        thisFrame = this;
 
         // Display a title.
         setTitle("Order Taker");
 
-        // Set the size of the window.
-        setPreferredSize(new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT));
-
-        // Position the window.
-        positionWindow();
-
         // Specify an action for the close button.
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        // Create a FlowLayout manager.
-        setLayout(new FlowLayout(FlowLayout.CENTER));
+        // The title on top, the categories in the middle and the buttons
+        // at the bottom, however many categories there are.
+        setLayout(new BorderLayout());
+
+        splash = new SplashDialog(this);
+
+        // Load off the event dispatch thread, and build the panels on the
+        // EDT when that is done.
+        CompletableFuture<Catalog>          catalogTask =
+            CompletableFuture.supplyAsync(() -> loadCatalog(catalogFile));
+        CompletableFuture<TaxEngine.Table>  taxTask     =
+            catalogTask.thenApply(SkateboardAppComp::loadTaxes);
+
+        taxTask.whenComplete(
+                (taxes, ex) -> SwingUtilities.invokeLater(() -> {
+                    splash.close();
+                    if (ex != null)
+                        startupFailed(ex);
+                    else
+                        finishStartup(catalogTask.join(), taxes);
+                }));
+    }
+
+    /**
+     *  loadCatalog method:
+     *  This method loads the parts catalog.  It runs on a startup thread.
+     */
+
+    private static Catalog loadCatalog(String catalogFile) {
+        try {
+            return Catalog.load(catalogFile);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *  loadTaxes method:
+     *  This method loads the tax rules and compiles them for the catalog.
+     *  It runs on a startup thread.
+     */
+
+    private static TaxEngine.Table loadTaxes(Catalog catalog) {
+        try {
+            return TaxEngine.load(TAX_FILE).compile(catalog);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *  startupFailed method:
+     *  This method tells the user why the catalog or tax rules could not
+     *  be loaded and exits.  It runs on the event dispatch thread.
+     */
+
+    private void startupFailed(Throwable ex) {
+        Throwable   cause   = ex;
+
+        // Unwrap the exceptions added by the startup tasks.
+        while ((cause instanceof CompletionException ||
+                cause instanceof UncheckedIOException) &&
+               cause.getCause() != null)
+            cause = cause.getCause();
 
+        JOptionPane.showMessageDialog(null, "Unable to load the parts " +
+                                      "catalog or tax rules:\n" +
+                                      cause.getMessage());
+        System.exit(1);
+    }
+
+    /**
+     *  finishStartup method:
+     *  This method builds the panels from the catalog and shows the
+     *  window.  It runs on the event dispatch thread.
+     */
+
+    private void finishStartup(Catalog catalog, TaxEngine.Table taxes) {
         // Create the custom panels.
         titlePanel = new TitlePanel();
-        deckPanel = new DeckPanel();
-        trucksPanel = new TrucksPanel();
-        wheelsPanel = new WheelsPanel();
-        accessoryPanel = new AccessoryPanel();
+        choicePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        categoryPanels = new CategoryPanel[catalog.getCategoryCount()];
+        for (int index = 0; index < categoryPanels.length; index++) {
+            categoryPanels[index] =
+                    new CategoryPanel(catalog.getCategory(index));
+            choicePanel.add(categoryPanels[index]);
+        }
+
+        // Price by category index, so that a purchase does no lookups.
+        pricer = new CatalogPricer(catalog, taxes, 0);
+        choices = new int[categoryPanels.length];
+        quote = new Quote();
 
         // Create the button panel.
         buildButtonPanel();
 
-        add(titlePanel);
-        add(deckPanel);
-        add(trucksPanel);
-        add(wheelsPanel);
-        add(accessoryPanel);
-        add(buttonPanel);
-
-        new SplashDialog(this);
+        add(titlePanel, BorderLayout.NORTH);
+        add(choicePanel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
 
-        // Pack the contents of the window and display it.
+        // Pack the contents of the window, center it and display it.
         pack();
+        positionWindow();
         setVisible(true);
     }
 
@@ -91,8 +168,8 @@ public class SkateboardAppComp extends JFrame {
         Dimension screenSize =
                new Dimension(Toolkit.getDefaultToolkit().getScreenSize());
 
-        windLeft    = (screenSize.width - WINDOW_WIDTH) / 2;
-        windTop     = (screenSize.height - WINDOW_HEIGHT) / 2;
+        windLeft    = (screenSize.width - getWidth()) / 2;
+        windTop     = (screenSize.height - getHeight()) / 2;
         setLocation(windLeft, windTop);
     }
 
@@ -126,63 +203,27 @@ public class SkateboardAppComp extends JFrame {
 
     private class PurchaseButtonListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
-            final String[]  TAG_PREFIXES = {
-                "Deck", "Trucks", "Wheels", "Accessory"
-            };
-            // Variables to hold the subtotal, sales tax, and total
-            double          salesTax;
-            double          subtotal    = 0.00;
-            double          total;
-
-            for (String tagPref : TAG_PREFIXES) {
-                String      tag         = tagPref + "List";
-                Element     listElem    = mainElements.getByTag(tag);
-
-                if (listElem != null) {
-                    JList<?>    list                = listElem.list;
-                    double[]    prices              = listElem.getPrices();
-                    // Determine which items were selected.
-                    int[]       selectionIndices;
-
-                    System.out.println("found tag '" + tag + "'");
-                    if (list.isSelectionEmpty()) {
-                        debug.println(tag + ": NONE");
-                        list.setSelectedIndex(0);
-                    }
-
-                    // Determine which items were selected.
-                    selectionIndices = list.getSelectedIndices();
-
-                    for (int index : selectionIndices) {
-                        System.out.println(tag + ": selected index: " + index);
-                        System.out.println(tag + ": price is $" +
-                                           prices[index]);
-                        subtotal += prices[index];
-                    }
-                }
-            }
+            // Find the choice in each category, by index.
+            for (int index = 0; index < categoryPanels.length; index++)
+                choices[index] = categoryPanels[index].getChoice();
 
-            if (subtotal == 0) {
+            pricer.price(choices, quote);
+
+            if (quote.getSubtotalCents() == 0) {
                 // Tell the user to select something.
                 JOptionPane.showMessageDialog(null, "No items have been " +
                                               "selected.");
             }
             else {
-                // Calculate the sales tax.
-                salesTax = subtotal * SALES_TAX_RATE;
-
-                // Calculate the total.
-                total = subtotal + salesTax;
-
                 // Display the costs.
-                new CostDialog(thisFrame, windLeft, windTop, subtotal,
-                               salesTax, total);
+                new CostDialog(thisFrame, windLeft, windTop,
+                               quote.getSubtotalCents(),
+                               quote.getSalesTaxCents(),
+                               quote.getTotalCents());
 
                 // Clear all of the selections back to None.
-                deckPanel.clearSelection();
-                trucksPanel.clearSelection();
-                wheelsPanel.clearSelection();
-                accessoryPanel.clearSelection();
+                for (CategoryPanel panel : categoryPanels)
+                    panel.clearSelection();
             }
         }
     }
@@ -199,101 +240,6 @@ public class SkateboardAppComp extends JFrame {
         }
     }
 
-    /**
-     *  Elements class:
-     */
-
-    private class Elements {
-        private ArrayList<Element>  elements    = new ArrayList<Element>();
-
-        public Elements() {
-        }
-
-        public void add(Element elem) {
-            elements.add(elem);
-        }
-
-        public Element getByTag(String tag) {
-            for (Element elem : elements) {
-                if (elem.tag.equals(tag))
-                    return elem;
-            }
-
-            return null;
-        }
-    }
-
-    public static class Element {
-        private JButton         button;
-        private JLabel          label;
-        private JList<?>        list;
-        private double[]        prices;
-        private String          tag;
-        private ElemType        type;
-
-        public Element(ElemType type, String tag, Object elemObj,
-                       JPanel panel) {
-            this.type   = type;
-            this.tag    = tag;
-
-            prices = new double[1];
-
-            switch(type) {
-                case LABEL:
-                    label = (JLabel) elemObj;
-                    panel.add(label);
-                    prices[0] = 0.00;
-                    break;
-                case LIST:
-                    if (elemObj instanceof JList<?>) {
-                        list = (JList<?>) elemObj;
-                        panel.add(list);
-                    }
-                    prices[0] = 0.00;
-                    break;
-                default:
-                    break;
-            }
-        }
-
-        public Element(ElemType type, Object elemObj, JPanel panel,
-                       String tag, ActionListener listener, Object groupObj) {
-            this.type   = type;
-            this.tag    = tag;
-
-            prices = new double[1];
-
-            switch(type) {
-                case BUTTON:
-                    button = (JButton) elemObj;
-                    button.addActionListener(listener);
-                    panel.add(button);
-                    prices[0] = 0.00;
-                    break;
-                case LABEL:
-                    label = (JLabel) elemObj;
-                    panel.add(label);
-                    prices[0] = 0.00;
-                    break;
-                case LIST:
-                    list = (JList<?>) elemObj;
-                    panel.add(list);
-                    prices[0] = 0.00;
-                    break;
-                default:
-                    break;
-            }
-        }
-
-        public double[] getPrices() {
-            return prices;
-        }
-
-        public void setPrices(double[] prices) {
-            this.prices = prices;
-        }
-    }
-
     /**
      *  SplashDialog class:
      *  Display a splash screen for the app.
@@ -350,17 +296,17 @@ public class SkateboardAppComp extends JFrame {
             for (JPanel panel : splashPanels)
                 getContentPane().add(panel);
 
-            // Make the dialog visible.
+            // Make the dialog visible.  It stays up until close is called
+            // when startup is finished.
             setVisible(true);
+        }
 
-            // Splash the dialog for a while
-            try {
-                Thread.sleep(2500);
-            }
-            catch (InterruptedException ex) {
-            }
+        /**
+         *  close method:
+         *  This method makes the dialog invisible and closes it.
+         */
 
-            // Make the dialog invisible and close it.
+        public void close() {
             setVisible(false);
             dispose();
         }
@@ -430,15 +376,12 @@ public class SkateboardAppComp extends JFrame {
         private String          totalStr;
         private JButton         okButton;
 
-        // Used to format the total amounts.
-        private DecimalFormat   dollar;
-
         /**
          *  CostDialog constructor:
          */
 
         public CostDialog(JFrame parentFrame, int windLeft, int windTop,
-                          double subtotal, double salesTax, double total) {
+                          long subtotal, long salesTax, long total) {
             super(parentFrame, "Total Purchase", true);
 
             // Set the dimensions of the dialog.
@@ -451,11 +394,10 @@ public class SkateboardAppComp extends JFrame {
             // Use the border layout manager.
             setLayout(new BorderLayout());
 
-            // Format the money variables as strings to use as labels.
-            dollar = new DecimalFormat("0.00");
-            subtotalStr = "$" + dollar.format(subtotal);
-            salesTaxStr = "$" + dollar.format(salesTax);
-            totalStr = "$" + dollar.format(total);
+            // Format the amounts in cents as strings to use as labels.
+            subtotalStr = CurrencyFormatter.DOLLARS.format(subtotal);
+            salesTaxStr = CurrencyFormatter.DOLLARS.format(salesTax);
+            totalStr = CurrencyFormatter.DOLLARS.format(total);
 
             costTitlePanel = new CostTitlePanel("Your Total Purchase");
 
@@ -542,212 +484,104 @@ public class SkateboardAppComp extends JFrame {
             titleLabel.setForeground(LABEL_COLOR);
 
             // Add the label to this panel.
-            mainElements.add(new Element(ElemType.LABEL, "TitleLabel",
-                                         titleLabel, this));
+            add(titleLabel);
         }
     }
 
     /**
-     *  DeckPanel class:
-     *  This class allows the user to select one of three decks.
+     *  CategoryPanel class:
+     *  This class lets the user choose the parts of one catalog category:
+     *  one of them, None by default, or any number, as the category says.
      */
 
-    private class DeckPanel extends JPanel {
-        // The title of the panel.
-        private final String    PANEL_TITLE             = "Decks";
-        // These are the names and prices of each deck.
-        private final String[]  PART_NAMES              = {
-            "None", "Master Thrasher", "Dictator", "Street King"
-        };
-        private final double[]  PART_PRICES             = {
-            0.00, 60.00, 45.00, 50.00
-        };
-
-        // The deck list to be added to the panel.
-        private JList<String>   deckList;
-
-        /**
-         *  DeckPanel constructor:
-         */
-
-        public DeckPanel() {
-            Element     element;
-
-            setPreferredSize(new Dimension(120, 120));
-
-            // KEEP THIS FOR REFERENCE!
-            // JList issue - use the latter vs. the former:
-            //JList deckList = new JList(PART_NAMES);
-            //JList<String> deckList = new JList<String>(PART_NAMES);
-
-            deckList = new JList<String>(PART_NAMES);
-
-            deckList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-
-            deckList.setSelectedIndex(0);
-
-            // Add a 'Decks' border around the panel.
-            setBorder(BorderFactory.createTitledBorder(PANEL_TITLE));
-
-            element = new Element(ElemType.LIST, "DeckList", deckList, this);
-            element.setPrices(PART_PRICES);
-            mainElements.add(element);
-        }
+    private class CategoryPanel extends JPanel {
+        // The parts to choose from.
+        private final Catalog.Category  category;
 
-        public void clearSelection() {
-            deckList.setSelectedIndex(0);
-        }
-    }
+        // The list of parts.
+        private JList<String>   list;
 
-    /**
-     *  TrucksPanel class:
-     *  This class allows the user to select one of three types of truck
-     *  assemblies.
-     */
-
-    private class TrucksPanel extends JPanel {
-        // The title of the panel.
-        private final String    PANEL_TITLE             = "Trucks";
-        // These are the names and prices of each trucks assembly.
-        private final String[]  PART_NAMES              = {
-            "None", "7.75\" axle", "8.00\" axle", "8.50\" axle"
-        };
-        private final double[]  PART_PRICES             = {
-            0.00, 35.00, 40.00, 45.00
-        };
-
-        // The trucks list to be added to the panel.
-        private JList<String>   trucksList;
-        
         /**
-         *  Constructor
+         *  CategoryPanel constructor:
          */
 
-        public TrucksPanel() {
-            Element     element;
-
-            setPreferredSize(new Dimension(80, 120));
-
-            trucksList = new JList<String>(PART_NAMES);
-
-            trucksList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        public CategoryPanel(Catalog.Category category) {
+            CatalogListModel    model   = new CatalogListModel(category);
 
-            trucksList.setSelectedIndex(0);
+            this.category = category;
 
-            // Add a 'Trucks' border around the panel.
-            setBorder(BorderFactory.createTitledBorder("Trucks"));
+            list = new JList<String>(model);
 
-            element = new Element(ElemType.LIST, "TrucksList", trucksList,
-                                  this);
-            element.setPrices(PART_PRICES);
-            mainElements.add(element);
-        }
+            // Size every row from one sample and scroll the rest.
+            list.setPrototypeCellValue(model.getPrototype());
+            list.setVisibleRowCount(LIST_ROWS);
 
-        public void clearSelection() {
-            trucksList.setSelectedIndex(0);
-        }
-    }
-
-    /**
-     *  WheelsPanel class:
-     *  This class allows the user to select one of four types of wheel sets.
-     */
-
-    private class WheelsPanel extends JPanel {
-        // These are the names and prices of each set of wheels.
-        private final String[]  PART_NAMES  = {
-            "None", "51 mm", "55 mm", "58 mm", "61 mm"
-        };
-        private final double[]  PART_PRICES = {
-            0.00, 20.00, 22.00, 24.00, 28.00
-        };
-
-        // The wheels list to be added to the panel.
-        private JList<String>   wheelsList;
-        
-        /**
-         *  Constructor
-         */
-
-        public WheelsPanel() {
-            Element     element;
-
-            setPreferredSize(new Dimension(60, 120));
-
-            wheelsList = new JList<String>(PART_NAMES);
-
-            wheelsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-
-            wheelsList.setSelectedIndex(0);
+            if (category.isMultipleChoice()) {
+                list.setSelectionMode(
+                        ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            }
+            else {
+                list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+                list.setSelectedIndex(0);
+            }
 
-            // Add a border around the panel.
-            setBorder(BorderFactory.createTitledBorder("Wheels"));
+            // Add a border with the category's title around the panel.
+            setBorder(BorderFactory.createTitledBorder(category.getTitle()));
 
-            element = new Element(ElemType.LIST, "WheelsList", wheelsList,
-                                  this);
-            element.setPrices(PART_PRICES);
-            mainElements.add(element);
+            // Add the list to the panel, scrolling the rows that do not fit.
+            add(new JScrollPane(list));
         }
 
         public void clearSelection() {
-            wheelsList.setSelectedIndex(0);
+            if (category.isMultipleChoice())
+                list.clearSelection();
+            else
+                list.setSelectedIndex(0);
         }
-    }
-
-    /**
-     *  AccessoryPanel class:
-     *  This class allows the user to select accessories.
-     */
-
-    public class AccessoryPanel extends JPanel {
-        // The title of the panel.
-        private final String    PANEL_TITLE = "Accessories";
-        // These are the names and prices of each accessory.
-        private final String[]  PART_NAMES  = {
-            "Grip tape", "Bearings", "Riser pads", "Nuts & bolts kit"
-        };
-        private final double[]  PART_PRICES = {
-            10.00, 30.00, 2.00, 3.00
-        };
-
-        // The accessory list to be added to the panel.
-        private JList<String>   accessoryList;
 
         /**
-         * Constructor
+         *  getChoice method:
+         *  This method returns the index of the chosen part, or for a
+         *  multiple-choice category a bit mask of the chosen parts.  It reads
+         *  the selection model in place, so it does not allocate.
          */
 
-        public AccessoryPanel() {
-            Element     element;
+        public int getChoice() {
+            ListSelectionModel  selection   = list.getSelectionModel();
+            int                 mask        = 0;
 
-            setPreferredSize(new Dimension(110, 120));  // FIXME
-
-            accessoryList = new JList<String>(PART_NAMES);
-
-            accessoryList.setSelectionMode(
-                    ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            if (selection.isSelectionEmpty()) {
+                Log.debug("{}: NONE", category.getKey());
+                clearSelection();
+                return 0;
+            }
 
-            // Add an 'Accessories' border around the panel.
-            setBorder(BorderFactory.createTitledBorder(PANEL_TITLE));
+            if (!category.isMultipleChoice())
+                return selection.getMinSelectionIndex();
 
-            element = new Element(ElemType.LIST, "AccessoryList",
-                                  accessoryList, this);
-            element.setPrices(PART_PRICES);
-            mainElements.add(element);
-        }
+            for (int index = selection.getMinSelectionIndex();
+                 index <= selection.getMaxSelectionIndex(); index++) {
+                if (selection.isSelectedIndex(index))
+                    mask |= 1 << index;
+            }
 
-        public void clearSelection() {
-            // Clear all selected items.
-            accessoryList.clearSelection();
+            return mask;
         }
     }
 
     /**
      *  main method:
-     *  This creates a SkateboardApp object which runs the application.
+     *  This creates a SkateboardAppComp object, which loads the parts
+     *  catalog and runs the application.  The catalog file may be given as
+     *  the first argument.
      */
     
     public static void main(String[] args) {
-        new SkateboardAppComp();
+        String  catalogFile = args.length > 0 ? args[0] : CATALOG_FILE;
+
+        // Time the event dispatch thread if asked to.
+        EdtMonitor.installIfEnabled();
+
+        SwingUtilities.invokeLater(() -> new SkateboardAppComp(catalogFile));
     }
 }
@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ *  The TaxEngine class holds the sales tax rules for each jurisdiction the
+ *  shop sells to.  They are loaded from a text file with one rule per line:
+ *
+ *      # A comment
+ *      jurisdiction|PA|0.06
+ *      rate|NY|Accessory|0
+ *
+ *  A jurisdiction line gives the rate for every category; a rate line
+ *  overrides it for one catalog category, and a rate of 0 makes that
+ *  category exempt.  Rates run from 0 to 1 (100%).  The first jurisdiction
+ *  is the shop's own, used at the registers.
+ *
+ *  The rules are compiled against a catalog into a Table, a flat array of
+ *  rates in millionths indexed by jurisdiction and category, so finding the
+ *  rate of a line is one array read.
+ */
+
+public class TaxEngine {
+    // 100%, in millionths.
+    private static final long   MAX_RATE    = 1_000_000;
+
+    // Jurisdiction codes in file order.
+    private final ArrayList<String>         jurisdictions   =
+        new ArrayList<String>();
+    // Rate for every category, by jurisdiction.
+    private final HashMap<String, Long>     defaultRates    =
+        new HashMap<String, Long>();
+    // Rates for single categories, by jurisdiction and category key.
+    private final HashMap<String, HashMap<String, Long>> categoryRates =
+        new HashMap<String, HashMap<String, Long>>();
+    // Where each rate line is, as "source:line: ", by jurisdiction and
+    // category key, for the errors found when compiling.
+    private final HashMap<String, HashMap<String, String>> rateLines =
+        new HashMap<String, HashMap<String, String>>();
+
+    private TaxEngine() {
+    }
+
+    /**
+     *  load method:
+     *  This method reads the tax rules from the named file.
+     */
+
+    public static TaxEngine load(String fileName) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(
+                Paths.get(fileName), StandardCharsets.UTF_8)) {
+            return parse(reader, fileName);
+        }
+    }
+
+    /**
+     *  parse method:
+     *  This method reads tax rules from a reader.  The source name is only
+     *  used in error messages.
+     */
+
+    public static TaxEngine parse(BufferedReader reader, String source)
+            throws IOException {
+        TaxEngine   engine      = new TaxEngine();
+        String      line;
+        int         lineNumber  = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+
+            // Skip blank lines and comments.
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+
+            String[]    fields  = line.split("\\|", -1);
+            String      where   = source + ":" + lineNumber + ": ";
+            long        rate;
+
+            for (int index = 0; index < fields.length; index++)
+                fields[index] = fields[index].trim();
+            rate = Money.parseRate(fields[fields.length - 1]);
+
+            if (fields[0].equals("jurisdiction") && fields.length == 3) {
+                if (engine.defaultRates.containsKey(fields[1]))
+                    throw new IOException(where + "duplicate jurisdiction '" +
+                                          fields[1] + "'");
+                if (rate < 0 || rate > MAX_RATE)
+                    throw new IOException(where + "bad rate '" + fields[2] +
+                                          "', expected 0 to 1");
+                engine.jurisdictions.add(fields[1]);
+                engine.defaultRates.put(fields[1], rate);
+            }
+            else if (fields[0].equals("rate") && fields.length == 4) {
+                if (!engine.defaultRates.containsKey(fields[1]))
+                    throw new IOException(where + "rate for unknown " +
+                                          "jurisdiction '" + fields[1] + "'");
+                if (rate < 0 || rate > MAX_RATE)
+                    throw new IOException(where + "bad rate '" + fields[3] +
+                                          "', expected 0 to 1");
+                if (engine.categoryRates.computeIfAbsent(
+                        fields[1], key -> new HashMap<String, Long>())
+                        .put(fields[2], rate) != null)
+                    throw new IOException(where + "duplicate rate for '" +
+                                          fields[2] + "'");
+                engine.rateLines.computeIfAbsent(
+                        fields[1], key -> new HashMap<String, String>())
+                        .put(fields[2], where);
+            }
+            else {
+                throw new IOException(where + "unrecognized line '" + line +
+                                      "'");
+            }
+        }
+
+        if (engine.jurisdictions.isEmpty())
+            throw new IOException(source + ": no jurisdictions");
+
+        return engine;
+    }
+
+    /**
+     *  compile method:
+     *  This method builds the rate table for the categories of a catalog.
+     *  It throws an IOException, giving the file and line, for a rate line
+     *  naming a category the catalog does not have.
+     */
+
+    public Table compile(Catalog catalog) throws IOException {
+        int     categoryCount   = catalog.getCategoryCount();
+        long[]  rates           =
+            new long[jurisdictions.size() * categoryCount];
+
+        for (HashMap<String, String> lines : rateLines.values()) {
+            for (String key : lines.keySet()) {
+                if (!catalog.hasCategory(key))
+                    throw new IOException(lines.get(key) + "rate for " +
+                                          "unknown category '" + key + "'");
+            }
+        }
+
+        for (int jurisdiction = 0; jurisdiction < jurisdictions.size();
+             jurisdiction++) {
+            String                  code        =
+                jurisdictions.get(jurisdiction);
+            HashMap<String, Long>   overrides   = categoryRates.get(code);
+
+            for (int category = 0; category < categoryCount; category++) {
+                String  key     = catalog.getCategory(category).getKey();
+                Long    rate    = overrides == null ? null
+                                                    : overrides.get(key);
+
+                rates[jurisdiction * categoryCount + category] =
+                    rate != null ? rate : defaultRates.get(code);
+            }
+        }
+
+        return new Table(jurisdictions.toArray(new String[0]), categoryCount,
+                         rates);
+    }
+
+    /**
+     *  Table class:
+     *  The compiled rates, in millionths, for one catalog.
+     */
+
+    public static final class Table {
+        private final String[]                  jurisdictions;
+        private final HashMap<String, Integer>  jurisdictionIndex;
+        private final int                       categoryCount;
+        private final long[]                    rates;
+
+        private Table(String[] jurisdictions, int categoryCount,
+                      long[] rates) {
+            this.jurisdictions  = jurisdictions;
+            this.categoryCount  = categoryCount;
+            this.rates          = rates;
+
+            jurisdictionIndex = new HashMap<String, Integer>();
+            for (int index = 0; index < jurisdictions.length; index++)
+                jurisdictionIndex.put(jurisdictions[index], index);
+        }
+
+        public int getJurisdictionCount() {
+            return jurisdictions.length;
+        }
+
+        public String getJurisdiction(int index) {
+            return jurisdictions[index];
+        }
+
+        /**
+         *  indexOf method:
+         *  This method returns the index of a jurisdiction code, or -1.
+         */
+
+        public int indexOf(String code) {
+            Integer index   = jurisdictionIndex.get(code);
+
+            return index != null ? index : -1;
+        }
+
+        /**
+         *  getRate method:
+         *  This method returns the rate, in millionths, for a category of
+         *  the catalog (by index) in a jurisdiction.
+         */
+
+        public long getRate(int jurisdiction, int category) {
+            return rates[jurisdiction * categoryCount + category];
+        }
+    }
+}